@@ -0,0 +1,79 @@
+package com.uma.example.springuma.carga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+// Latencias (HdrHistogram, en microsegundos con 3 cifras significativas) y errores de cada operacion.
+// Lo registrado durante el calentamiento se descarta con reiniciar().
+public class Estadisticas {
+
+    // Con la aplicacion saturada, la latencia medida desde el inicio programado crece con el retraso acumulado
+    private static final long MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Map<String, Operacion> operaciones = new ConcurrentSkipListMap<>();
+    private volatile long inicio = System.nanoTime();
+    private volatile long fin;
+
+    public void registrar(String operacion, long nanos, boolean error) {
+        operaciones.computeIfAbsent(operacion, k -> new Operacion()).registrar(nanos, error);
+    }
+
+    public void reiniciar() {
+        operaciones.clear();
+        inicio = System.nanoTime();
+    }
+
+    public void terminar() {
+        fin = System.nanoTime();
+    }
+
+    public double getSegundos() {
+        return ((fin > 0 ? fin : System.nanoTime()) - inicio) / 1e9;
+    }
+
+    public List<Resumen> resumen() {
+        double segundos = getSegundos();
+        List<Resumen> resumen = new ArrayList<>();
+        operaciones.forEach((nombre, operacion) -> resumen.add(operacion.resumen(nombre, segundos)));
+        return resumen;
+    }
+
+    // Latencias en milisegundos
+    public record Resumen(String operacion, long peticiones, long errores, double porSegundo,
+                          double p50, double p99, double p999, double max) {
+
+        public double tasaErrores() {
+            return peticiones == 0 ? 0 : (double) errores / peticiones;
+        }
+    }
+
+    private static final class Operacion {
+        private final Histogram latencias = new ConcurrentHistogram(1, MAX_MICROS, 3);
+        private final AtomicLong errores = new AtomicLong();
+
+        void registrar(long nanos, boolean error) {
+            latencias.recordValue(Math.min(Math.max(1, nanos / 1000), MAX_MICROS));
+            if (error) {
+                errores.incrementAndGet();
+            }
+        }
+
+        Resumen resumen(String nombre, double segundos) {
+            long peticiones = latencias.getTotalCount();
+            return new Resumen(nombre, peticiones, errores.get(), peticiones / segundos,
+                ms(latencias.getValueAtPercentile(50)), ms(latencias.getValueAtPercentile(99)),
+                ms(latencias.getValueAtPercentile(99.9)), ms(latencias.getMaxValue()));
+        }
+
+        private static double ms(long micros) {
+            return micros / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.uma.example.springuma.carga;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+
+// Carga con el flujo de trabajo de un radiologo contra la aplicacion arrancada en un puerto aleatorio:
+// alta de medico y, en bucle, alta de paciente -> subida de imagenes -> prediccion -> informe (y su
+// prediccion en la cola) -> listados, descarga y busqueda. Las predicciones van a StubPredictor.
+// Informa de peticiones por segundo, p50/p99/p99.9 y tasa de errores de cada endpoint, y falla si no se
+// cumplen los SLO. Todos los parametros son propiedades del sistema: mvn -Pcarga verify -Dcarga.usuarios=32
+//
+// Los flujos llegan a un ritmo fijo (carga.flujos-por-s entre todos los usuarios), no uno detras de otro:
+// cada usuario tiene su calendario y la latencia del flujo se mide desde el instante en que le tocaba
+// empezar. Si la aplicacion se atasca, los flujos que debian empezar mientras tanto cuentan el retraso
+// (sin omision coordinada); las latencias de cada endpoint son tiempos de servicio con esa carga.
+//
+// Como los demas tests de integracion, usa la configuracion de src/test/resources: H2 en memoria (no la
+// base de datos en fichero de produccion), estadisticas de Hibernate activadas y el almacen de imagenes en
+// target. Los resultados comparan versiones entre si, no predicen la latencia en produccion.
+public class FlujoClinicoCarga extends AbstractIntegration {
+
+    // Usuarios concurrentes, flujos que empiezan por segundo entre todos, duracion de la medida y
+    // calentamiento previo que no se mide
+    private static final int USUARIOS = Integer.getInteger("carga.usuarios", 8);
+    private static final double FLUJOS_POR_S = doble("carga.flujos-por-s", 2);
+    private static final int DURACION_S = Integer.getInteger("carga.duracion-s", 60);
+    private static final int CALENTAMIENTO_S = Integer.getInteger("carga.calentamiento-s", 10);
+    // Imagenes por paciente; unicas: cada subida tiene un contenido distinto (sin deduplicacion ni cache de predicciones)
+    private static final int IMAGENES = Integer.getInteger("carga.imagenes", 2);
+    private static final boolean IMAGENES_UNICAS = Boolean.parseBoolean(System.getProperty("carga.imagenes-unicas", "true"));
+    private static final long SEMILLA = Long.getLong("carga.semilla", 42);
+
+    // Servidor de inferencia simulado: latencia lognormal (mediana y sigma) y fraccion de errores
+    private static final double STUB_MEDIANA_MS = doble("carga.stub.latencia-mediana-ms", 150);
+    private static final double STUB_SIGMA = doble("carga.stub.latencia-sigma", 0.5);
+    private static final double STUB_ERROR_503 = doble("carga.stub.error-503", 0.02);
+    private static final double STUB_ERROR_500 = doble("carga.stub.error-500", 0.005);
+
+    // SLO: p99 de cada endpoint (los de prediccion, que incluyen al modelo, aparte) y del flujo completo,
+    // errores y flujos completados por segundo
+    private static final double SLO_P99_MS = doble("carga.slo.p99-ms", 1000);
+    private static final double SLO_P99_FLUJO_MS = doble("carga.slo.p99-flujo-ms", 30000);
+    private static final double SLO_P99_PREDICCION_MS = doble("carga.slo.p99-prediccion-ms", 5000);
+    private static final double SLO_ERRORES = doble("carga.slo.errores", 0.02);
+    private static final double SLO_FLUJOS_POR_S = doble("carga.slo.flujos-por-s", 1);
+
+    private static final String FLUJO = "flujo completo";
+    private static final String PREDICCION_INFORME = "informe -> prediccion (cola)";
+    private static final Duration ESPERA_PREDICCION = Duration.ofSeconds(60);
+
+    private static StubPredictor stub;
+
+    @LocalServerPort
+    private int puerto;
+
+    @Value("${spring.datasource.url}")
+    private String baseDeDatos;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Estadisticas estadisticas = new Estadisticas();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private volatile boolean parar;
+
+    @DynamicPropertySource
+    static void propiedades(DynamicPropertyRegistry registro) throws IOException {
+        stub = new StubPredictor(0, STUB_MEDIANA_MS, STUB_SIGMA, STUB_ERROR_503, STUB_ERROR_500, SEMILLA);
+        registro.add("predictor.tipo", () -> "api");
+        registro.add("predictor.url", stub::getUrl);
+        registro.add("predictor.reintentos.backoff-ms", () -> System.getProperty("carga.backoff-ms", "100"));
+        registro.add("prediccion.cola.intervalo-ms", () -> "100");
+        registro.add("imagen.store.path", () -> "target/carga/imagenes");
+    }
+
+    @AfterAll
+    void cerrarStub() {
+        stub.close();
+    }
+
+    @Test
+    void flujoClinico() throws Exception {
+        byte[][] imagenes = {
+            Files.readAllBytes(Path.of("src/test/resources/healthy.png")),
+            Files.readAllBytes(Path.of("src/test/resources/no_healthty.png"))
+        };
+        ExecutorService usuarios = Executors.newFixedThreadPool(USUARIOS);
+        List<Future<?>> resultados = new ArrayList<>();
+        for (int u = 0; u < USUARIOS; u++) {
+            int usuario = u;
+            resultados.add(usuarios.submit(() -> {
+                usuario(usuario, imagenes, new Random(SEMILLA + usuario));
+                return null;
+            }));
+        }
+        TimeUnit.SECONDS.sleep(CALENTAMIENTO_S);
+        estadisticas.reiniciar();
+        long peticionesStub = stub.getPeticiones();
+        TimeUnit.SECONDS.sleep(DURACION_S);
+        parar = true;
+        estadisticas.terminar();
+        for (Future<?> resultado : resultados) {
+            resultado.get(ESPERA_PREDICCION.toSeconds() * 2, TimeUnit.SECONDS);
+        }
+        usuarios.shutdown();
+
+        List<Estadisticas.Resumen> resumen = estadisticas.resumen();
+        informe(resumen, stub.getPeticiones() - peticionesStub);
+        List<String> incumplidos = slo(resumen);
+        assertTrue(incumplidos.isEmpty(), "SLO incumplidos:\n" + String.join("\n", incumplidos));
+    }
+
+    private void usuario(int usuario, byte[][] imagenes, Random random) throws Exception {
+        String dniMedico = "CARGA-M" + usuario;
+        peticion("POST /medico", post("/medico", json(Map.of("dni", dniMedico, "nombre", "Medico " + usuario,
+                "especialidad", "Radiologia"))));
+        long medicoId = mapper.readTree(peticion("GET /medico/dni/{dni}", get("/medico/dni/" + dniMedico)).body()).get("id").asLong();
+        long ultimoPaciente = 0;
+        // Un flujo cada periodo por usuario, desfasados entre usuarios para repartir las llegadas
+        long periodo = (long) (USUARIOS * 1e9 / FLUJOS_POR_S);
+        long programado = System.nanoTime() + usuario * periodo / USUARIOS;
+        for (int n = 0; !parar; n++, programado += periodo) {
+            long espera = programado - System.nanoTime();
+            if (espera > 0) {
+                TimeUnit.NANOSECONDS.sleep(espera);
+            }
+            boolean error = false;
+            try {
+                ultimoPaciente = iteracion(usuario, n, medicoId, ultimoPaciente, imagenes, random);
+            } catch (FalloFlujo | IOException e) {
+                error = true;
+            }
+            // Si el flujo anterior acabo tarde, este empezo tarde: el retraso es parte de su latencia
+            estadisticas.registrar(FLUJO, System.nanoTime() - programado, error);
+        }
+    }
+
+    private long iteracion(int usuario, int n, long medicoId, long ultimoPaciente, byte[][] imagenes, Random random) throws Exception {
+        Map<String, Object> paciente = new LinkedHashMap<>();
+        paciente.put("nombre", "Paciente " + usuario + "-" + n);
+        paciente.put("edad", 40 + random.nextInt(40));
+        paciente.put("cita", "Revision");
+        paciente.put("dni", "CARGA-P" + usuario + "-" + n);
+        paciente.put("medico", Map.of("id", medicoId));
+        peticion("POST /paciente", post("/paciente", json(paciente)));
+        // Los pacientes nuevos del medico, por cursor desde el ultimo visto
+        JsonNode nuevos = mapper.readTree(peticion("GET /paciente/medico/{id}?after=",
+                get("/paciente/medico/" + medicoId + "?after=" + ultimoPaciente)).body());
+        if (nuevos.isEmpty()) {
+            throw new FalloFlujo();
+        }
+        long pacienteId = nuevos.get(nuevos.size() - 1).get("id").asLong();
+
+        for (int i = 0; i < IMAGENES; i++) {
+            byte[] imagen = imagenes[random.nextInt(imagenes.length)];
+            peticion("POST /imagen", multipart(IMAGENES_UNICAS ? unica(imagen, random) : imagen, pacienteId));
+        }
+        JsonNode subidas = mapper.readTree(peticion("GET /imagen/paciente/{id}", get("/imagen/paciente/" + pacienteId)).body());
+        long imagenId = 0;
+        for (JsonNode subida : subidas) {
+            imagenId = subida.get("id").asLong();
+            peticion("GET /imagen/predict/{id}", get("/imagen/predict/" + imagenId));
+        }
+        peticion("GET /imagen/{id}?size=thumbnail", get("/imagen/" + imagenId + "?size=thumbnail"));
+
+        long inicio = System.nanoTime();
+        HttpResponse<byte[]> creado = peticion("POST /informe", post("/informe", json(Map.of(
+                "contenido", "Mamografia de control: " + (random.nextBoolean() ? "microcalcificaciones agrupadas" : "sin hallazgos"),
+                "imagen", Map.of("id", imagenId)))));
+        String prediccion = creado.headers().firstValue("Location").orElseThrow(FalloFlujo::new);
+        esperarPrediccion(prediccion, inicio);
+
+        peticion("GET /informe/imagen/{id}", get("/informe/imagen/" + imagenId));
+        peticion("GET /informe/busqueda?q=", get("/informe/busqueda?q=microcalcificaciones&size=20"));
+        return pacienteId;
+    }
+
+    // El informe se guarda sin esperar al modelo: se mide hasta que la cola deja su prediccion
+    private void esperarPrediccion(String uri, long inicio) throws Exception {
+        long limite = inicio + ESPERA_PREDICCION.toNanos();
+        while (System.nanoTime() < limite) {
+            JsonNode estado = mapper.readTree(peticion("GET /informe/{id}/prediccion", get(uri)).body());
+            String valor = estado.path("estado").asText();
+            if (!"PENDIENTE".equals(valor)) {
+                estadisticas.registrar(PREDICCION_INFORME, System.nanoTime() - inicio, !"COMPLETADA".equals(valor));
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        estadisticas.registrar(PREDICCION_INFORME, System.nanoTime() - inicio, true);
+    }
+
+    private HttpResponse<byte[]> peticion(String operacion, HttpRequest peticion) throws IOException, InterruptedException {
+        long inicio = System.nanoTime();
+        try {
+            HttpResponse<byte[]> respuesta = http.send(peticion, HttpResponse.BodyHandlers.ofByteArray());
+            boolean error = respuesta.statusCode() >= 400;
+            estadisticas.registrar(operacion, System.nanoTime() - inicio, error);
+            if (error) {
+                throw new FalloFlujo();
+            }
+            return respuesta;
+        } catch (IOException e) {
+            estadisticas.registrar(operacion, System.nanoTime() - inicio, true);
+            throw e;
+        }
+    }
+
+    private HttpRequest get(String ruta) {
+        return peticionBase(ruta).GET().build();
+    }
+
+    private HttpRequest post(String ruta, byte[] json) {
+        return peticionBase(ruta).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json)).build();
+    }
+
+    private HttpRequest multipart(byte[] imagen, long pacienteId) throws IOException {
+        String limite = "----carga" + System.nanoTime();
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream(imagen.length + 512);
+        parte(cuerpo, limite, "image", "mamografia.png", "image/png", imagen);
+        parte(cuerpo, limite, "paciente", null, "application/json", json(Map.of("id", pacienteId)));
+        cuerpo.write(("--" + limite + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return peticionBase("/imagen").header("Content-Type", "multipart/form-data; boundary=" + limite)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(cuerpo.toByteArray())).build();
+    }
+
+    private static void parte(ByteArrayOutputStream cuerpo, String limite, String nombre, String fichero,
+                              String tipo, byte[] contenido) throws IOException {
+        String cabecera = "--" + limite + "\r\nContent-Disposition: form-data; name=\"" + nombre + "\""
+                + (fichero != null ? "; filename=\"" + fichero + "\"" : "")
+                + "\r\nContent-Type: " + tipo + "\r\n\r\n";
+        cuerpo.write(cabecera.getBytes(StandardCharsets.US_ASCII));
+        cuerpo.write(contenido);
+        cuerpo.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private HttpRequest.Builder peticionBase(String ruta) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta)).timeout(Duration.ofSeconds(60));
+    }
+
+    private byte[] json(Object valor) throws IOException {
+        return mapper.writeValueAsBytes(valor);
+    }
+
+    // Bytes aleatorios tras el final del PNG: los lectores de imagen los ignoran, pero el hash cambia
+    private static byte[] unica(byte[] imagen, Random random) {
+        byte[] copia = new byte[imagen.length + 16];
+        System.arraycopy(imagen, 0, copia, 0, imagen.length);
+        byte[] relleno = new byte[16];
+        random.nextBytes(relleno);
+        System.arraycopy(relleno, 0, copia, imagen.length, relleno.length);
+        return copia;
+    }
+
+    private void informe(List<Estadisticas.Resumen> resumen, long peticionesStub) throws IOException {
+        StringBuilder tabla = new StringBuilder(String.format("%nCarga: %d usuarios, %.2f flujos/s ofrecidos, %.1f s medidos, "
+                + "%d llamadas al predictor simulado%nBase de datos: %s%n",
+                USUARIOS, FLUJOS_POR_S, estadisticas.getSegundos(), peticionesStub, baseDeDatos));
+        tabla.append(String.format("%-34s %9s %8s %8s %9s %9s %9s %9s%n",
+                "operacion", "peticiones", "errores", "pet/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Estadisticas.Resumen r : resumen) {
+            tabla.append(String.format("%-34s %9d %7.2f%% %8.2f %9.1f %9.1f %9.1f %9.1f%n", r.operacion(), r.peticiones(),
+                    100 * r.tasaErrores(), r.porSegundo(), r.p50(), r.p99(), r.p999(), r.max()));
+        }
+        System.out.println(tabla);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("usuarios", USUARIOS);
+        resultado.put("flujosPorSegundo", FLUJOS_POR_S);
+        resultado.put("baseDeDatos", baseDeDatos);
+        resultado.put("segundos", estadisticas.getSegundos());
+        resultado.put("semilla", SEMILLA);
+        resultado.put("stub", Map.of("latenciaMedianaMs", STUB_MEDIANA_MS, "latenciaSigma", STUB_SIGMA,
+                "error503", STUB_ERROR_503, "error500", STUB_ERROR_500, "peticiones", peticionesStub));
+        resultado.put("operaciones", resumen);
+        Path fichero = Path.of("target/carga/resultado.json");
+        Files.createDirectories(fichero.getParent());
+        mapper.writerWithDefaultPrettyPrinter().writeValue(fichero.toFile(), resultado);
+    }
+
+    private static List<String> slo(List<Estadisticas.Resumen> resumen) {
+        List<String> incumplidos = new ArrayList<>();
+        for (Estadisticas.Resumen r : resumen) {
+            if (r.tasaErrores() > SLO_ERRORES) {
+                incumplidos.add(String.format("%s: errores %.2f%% > %.2f%%", r.operacion(), 100 * r.tasaErrores(), 100 * SLO_ERRORES));
+            }
+            if (r.operacion().equals(FLUJO)) {
+                if (r.porSegundo() < SLO_FLUJOS_POR_S) {
+                    incumplidos.add(String.format("%s: %.2f flujos/s < %.2f", r.operacion(), r.porSegundo(), SLO_FLUJOS_POR_S));
+                }
+                if (r.p99() > SLO_P99_FLUJO_MS) {
+                    incumplidos.add(String.format("%s: p99 %.1f ms > %.1f ms", r.operacion(), r.p99(), SLO_P99_FLUJO_MS));
+                }
+                continue;
+            }
+            boolean prediccion = r.operacion().contains("predict") || r.operacion().equals(PREDICCION_INFORME);
+            double limite = prediccion ? SLO_P99_PREDICCION_MS : SLO_P99_MS;
+            if (r.p99() > limite) {
+                incumplidos.add(String.format("%s: p99 %.1f ms > %.1f ms", r.operacion(), r.p99(), limite));
+            }
+        }
+        if (resumen.stream().noneMatch(r -> r.operacion().equals(FLUJO))) {
+            incumplidos.add("No se ha completado ningun flujo");
+        }
+        return incumplidos;
+    }
+
+    private static double doble(String propiedad, double porDefecto) {
+        String valor = System.getProperty(propiedad);
+        return valor == null ? porDefecto : Double.parseDouble(valor);
+    }
+
+    // Paso del flujo con respuesta de error: ya esta contado en su endpoint, se abandona la iteracion
+    private static final class FalloFlujo extends RuntimeException {
+        FalloFlujo() {
+            super(null, null, false, false);
+        }
+    }
+}
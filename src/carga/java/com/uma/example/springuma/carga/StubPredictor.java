@@ -0,0 +1,108 @@
+package com.uma.example.springuma.carga;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Servidor de inferencia local con la misma interfaz que la API de HuggingFace (POST con la imagen,
+// respuesta [{"label": ..., "score": ...}]). La latencia sigue una distribucion lognormal y una fraccion
+// de las peticiones falla con 503 (modelo cargando, el cliente reintenta) o con 500.
+// Con la misma semilla, la secuencia de latencias y errores es la misma en cada ejecucion.
+public class StubPredictor implements AutoCloseable {
+
+    private final HttpServer servidor;
+    private final ExecutorService executor;
+    private final Random random;
+    private final double medianaMs;
+    private final double sigma;
+    private final double error503;
+    private final double error500;
+
+    private final AtomicLong peticiones = new AtomicLong();
+    private final AtomicLong errores503 = new AtomicLong();
+    private final AtomicLong errores500 = new AtomicLong();
+
+    public StubPredictor(int puerto, double medianaMs, double sigma, double error503, double error500, long semilla) throws IOException {
+        this.medianaMs = medianaMs;
+        this.sigma = sigma;
+        this.error503 = error503;
+        this.error500 = error500;
+        this.random = new Random(semilla);
+        this.servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", puerto), 1024);
+        // Un hilo por peticion en curso: la latencia simulada no debe limitar cuantas atiende a la vez
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-predictor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.servidor.setExecutor(executor);
+        this.servidor.createContext("/", this::responder);
+        this.servidor.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort() + "/";
+    }
+
+    private void responder(HttpExchange intercambio) throws IOException {
+        try (intercambio; InputStream cuerpo = intercambio.getRequestBody()) {
+            cuerpo.transferTo(OutputStream.nullOutputStream());
+            peticiones.incrementAndGet();
+            long latencia;
+            double sorteo;
+            double score;
+            synchronized (random) {
+                latencia = Math.round(medianaMs * Math.exp(sigma * random.nextGaussian()));
+                sorteo = random.nextDouble();
+                score = random.nextDouble();
+            }
+            Thread.sleep(latencia);
+            if (sorteo < error503) {
+                errores503.incrementAndGet();
+                enviar(intercambio, 503, "{\"error\":\"Model is currently loading\",\"estimated_time\":1.0}");
+            } else if (sorteo < error503 + error500) {
+                errores500.incrementAndGet();
+                enviar(intercambio, 500, "{\"error\":\"Internal error\"}");
+            } else {
+                enviar(intercambio, 200, "[{\"label\":\"LABEL_0\",\"score\":" + (1 - score) + "},"
+                    + "{\"label\":\"LABEL_1\",\"score\":" + score + "}]");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void enviar(HttpExchange intercambio, int estado, String json) throws IOException {
+        byte[] cuerpo = json.getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(estado, cuerpo.length);
+        intercambio.getResponseBody().write(cuerpo);
+    }
+
+    public long getPeticiones() {
+        return peticiones.get();
+    }
+
+    public long getErrores503() {
+        return errores503.get();
+    }
+
+    public long getErrores500() {
+        return errores500.get();
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+        executor.shutdownNow();
+    }
+}
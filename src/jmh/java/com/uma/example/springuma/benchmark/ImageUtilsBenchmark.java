@@ -0,0 +1,80 @@
+package com.uma.example.springuma.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Compresion y descompresion de imagenes por tamaño, nivel de deflate y tipo de contenido
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ImageUtilsBenchmark {
+
+    @Param({"65536", "1048576", "10485760"})
+    private int size;
+
+    @Param({"1", "6", "9"})
+    private int level;
+
+    // ruido: bytes aleatorios, como un PNG/JPEG ya comprimido; gradiente: pixeles sin comprimir
+    @Param({"ruido", "gradiente"})
+    private String contenido;
+
+    private byte[] imagen;
+    private byte[] comprimida;
+
+    @Setup
+    public void setup() {
+        imagen = new byte[size];
+        if ("ruido".equals(contenido)) {
+            // Semilla fija para que los datos sean los mismos en cada ejecucion
+            new Random(42).nextBytes(imagen);
+        } else {
+            for (int i = 0; i < size; i++) {
+                imagen[i] = (byte) ((i % 512) / 2);
+            }
+        }
+        comprimida = ImageUtils.compressImage(imagen, level);
+    }
+
+    @Benchmark
+    public byte[] compressImage() {
+        return ImageUtils.compressImage(imagen, level);
+    }
+
+    @Benchmark
+    public byte[] decompressImage() {
+        return ImageUtils.decompressImage(comprimida);
+    }
+
+    @Benchmark
+    public int compressImageStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        ImageUtils.compressImage(new ByteArrayInputStream(imagen), out, level);
+        return out.size();
+    }
+
+    @Benchmark
+    public byte[] decompressImageStream() throws IOException {
+        return ImageUtils.decompressImage(new ByteArrayInputStream(comprimida)).readAllBytes();
+    }
+}
@@ -0,0 +1,34 @@
+package com.uma.example.springuma.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uma.example.springuma.model.ImagenAPIPredictor;
+
+// Parseo de la respuesta JSON de la API de inferencia
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ProcessResponseBenchmark {
+
+    private final String respuesta =
+        "[{\"label\":\"LABEL_0\",\"score\":0.9876543210},{\"label\":\"LABEL_1\",\"score\":0.0123456789}]";
+
+    @Benchmark
+    public Map<String, Double> processResponse() throws Exception {
+        return ImagenAPIPredictor.processResponse(respuesta);
+    }
+}
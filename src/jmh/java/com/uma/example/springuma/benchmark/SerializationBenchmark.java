@@ -0,0 +1,94 @@
+package com.uma.example.springuma.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.ImagenInfo;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+
+// Serializacion con Jackson de los listados que devuelven los controladores
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int elementos;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private List<Paciente> pacientes;
+    private List<ImagenInfo> imagenes;
+    private List<Informe> informes;
+
+    private ObjectWriter pacientesWriter;
+    private ObjectWriter imagenesWriter;
+    private ObjectWriter informesWriter;
+
+    @Setup
+    public void setup() {
+        Calendar fecha = Calendar.getInstance();
+        fecha.setTimeInMillis(0);
+        Medico medico = new Medico("12345678A", "Medico", "Radiologia");
+        medico.setId(1);
+        pacientes = new ArrayList<>();
+        imagenes = new ArrayList<>();
+        informes = new ArrayList<>();
+        for (int i = 0; i < elementos; i++) {
+            Paciente paciente = new Paciente("Paciente " + i, 40 + i % 30, "cita " + i, "DNI" + i, medico);
+            paciente.setId(i);
+            pacientes.add(paciente);
+
+            imagenes.add(new ImagenInfo(i, "imagen" + i + ".png", fecha, paciente));
+
+            Imagen imagen = new Imagen();
+            imagen.setId(i);
+            imagen.setNombre("imagen" + i + ".png");
+            imagen.setFecha(fecha);
+            imagen.setPaciente(paciente);
+            Informe informe = new Informe("Not cancer (label 0),  score: 0.98", "Contenido del informe " + i, imagen);
+            informe.setId(i);
+            informes.add(informe);
+        }
+        pacientesWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Paciente.class));
+        imagenesWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, ImagenInfo.class));
+        informesWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Informe.class));
+    }
+
+    @Benchmark
+    public byte[] pacientes() throws Exception {
+        return pacientesWriter.writeValueAsBytes(pacientes);
+    }
+
+    @Benchmark
+    public byte[] imagenes() throws Exception {
+        return imagenesWriter.writeValueAsBytes(imagenes);
+    }
+
+    @Benchmark
+    public byte[] informes() throws Exception {
+        return informesWriter.writeValueAsBytes(informes);
+    }
+}
@@ -1,16 +1,32 @@
 package com.uma.example.springuma;
 
+import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.Collections;
 
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
 @SpringBootApplication
+@EnableScheduling
 public class SpringumaApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(SpringumaApplication.class, args);
@@ -23,10 +39,42 @@ public CorsFilter corsFilter() {
     config.setAllowCredentials(false);
     // Don't do this in production, use a proper list  of allowed origins
     config.setAllowedOrigins(Collections.singletonList("http://localhost:4200"));
-    config.setAllowedHeaders(Arrays.asList("Origin", "Content-Type", "Accept"));
+    config.setAllowedHeaders(Arrays.asList("Origin", "Content-Type", "Accept", "If-None-Match", "Range"));
+    config.setExposedHeaders(Arrays.asList("ETag", "Content-Range", "Accept-Ranges", "Link", "X-Next-Cursor", "X-Total-Count"));
     config.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "OPTIONS", "DELETE", "PATCH"));
     source.registerCorsConfiguration("/**", config);
     return new CorsFilter(source);
 }
 
+// CacheManager de JCache propio de este contexto para la cache de segundo nivel. El proveedor de Ehcache
+// devuelve el mismo CacheManager para la misma URI y class loader: sin un class loader propio, todos los
+// contextos (los tests arrancan varios) compartirian las regiones y al cerrar uno se cerrarian las de los demas
+@Bean(destroyMethod = "close")
+public CacheManager cacheManagerSegundoNivel() throws URISyntaxException {
+    ClassLoader classLoader = new ClassLoader(SpringumaApplication.class.getClassLoader()) { };
+    return Caching.getCachingProvider(EhcacheCachingProvider.class.getName())
+        .getCacheManager(SpringumaApplication.class.getResource("/ehcache.xml").toURI(), classLoader);
+}
+
+@Bean
+public HibernatePropertiesCustomizer cacheManagerHibernate(CacheManager cacheManagerSegundoNivel) {
+    return propiedades -> propiedades.put(ConfigSettings.CACHE_MANAGER, cacheManagerSegundoNivel);
+}
+
+// Respuestas en Smile o CBOR para los clientes que las piden en Accept (application/x-jackson-smile,
+// application/cbor), con la misma configuracion de Jackson que el JSON; sin Accept se sigue respondiendo JSON.
+// Smile ademas escribe una sola vez cada texto repetido (el medico y el paciente de cada elemento de un listado)
+@Bean
+public MappingJackson2SmileHttpMessageConverter smileConverter(Jackson2ObjectMapperBuilder builder) {
+    SmileFactory factory = SmileFactory.builder()
+        .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+        .build();
+    return new MappingJackson2SmileHttpMessageConverter(builder.factory(factory).build());
+}
+
+@Bean
+public MappingJackson2CborHttpMessageConverter cborConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+}
+
 }
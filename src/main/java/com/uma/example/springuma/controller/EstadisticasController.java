@@ -0,0 +1,28 @@
+package com.uma.example.springuma.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.uma.example.springuma.model.EstadisticasService;
+
+@RestController
+public class EstadisticasController {
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    // Aciertos y fallos de la cache de segundo nivel (por region) y de la cache de predicciones
+    @GetMapping("/estadisticas/cache")
+    public Map<String, Map<String, Object>> getEstadisticasCache() {
+        return estadisticasService.getEstadisticasCache();
+    }
+
+    // Estado del circuit breaker del servicio de prediccion
+    @GetMapping("/estadisticas/predictor")
+    public Map<String, Object> getEstadisticasPredictor() {
+        return estadisticasService.getEstadisticasPredictor();
+    }
+}
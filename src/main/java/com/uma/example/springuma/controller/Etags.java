@@ -0,0 +1,23 @@
+package com.uma.example.springuma.controller;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import com.uma.example.springuma.model.Validador;
+
+// ETag debiles de las respuestas JSON a partir de validadores baratos: el instante del ultimo cambio de la
+// entidad o el Validador de un listado. Con WebRequest.checkNotModified, si el cliente ya tiene la respuesta
+// (If-None-Match) se devuelve 304 sin consultar ni serializar el contenido.
+final class Etags {
+
+    private Etags() {
+    }
+
+    static String debil(long... partes) {
+        return Arrays.stream(partes).mapToObj(Long::toString).collect(Collectors.joining("-", "W/\"", "\""));
+    }
+
+    static String debil(Validador validador) {
+        return debil(validador.elementos(), validador.ultimoId(), validador.modificado());
+    }
+}
@@ -1,55 +1,266 @@
 package com.uma.example.springuma.controller;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.ContenidoImagen;
+import com.uma.example.springuma.model.ImagenInfo;
 import com.uma.example.springuma.model.ImagenService;
 import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PrediccionResultado;
+import com.uma.example.springuma.model.PredictorNoDisponibleException;
+import com.uma.example.springuma.model.VarianteImagen;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 public class ImagenController {
+    private static final Logger log = LoggerFactory.getLogger(ImagenController.class);
+    private static final long PREDICCION_LOTE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    // Atributos de peticion con los que Tomcat (conector NIO con useSendfile) envia un fichero con sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ImagenService imagenService;
 
+    @Value("${imagen.http.max-age-s:31536000}")
+    private long maxAgeImagenes;
+
+    @Value("${imagen.http.cache-compartida:false}")
+    private boolean cacheCompartida;
+
+	// ?size=original (por defecto), preview o thumbnail. El contenido de una imagen no cambia una vez
+	// subida: se sirve con un ETag fuerte (su hash) y cache de larga duracion, y si el cliente ya lo
+	// tiene (If-None-Match) se responde 304 sin leer la imagen. El original guardado en disco se envia
+	// con sendfile cuando el conector lo admite. Si el original no se puede reducir, se sirve el original
 	@GetMapping("/imagen/{id}")
-	public ResponseEntity<?> downloadImage(@PathVariable long id){
-		byte[] imageData=imagenService.downloadImage(id);
-		return ResponseEntity.ok()
-        .contentType(MediaType.valueOf(
-            "image/png"
-        ))
-        .body(imageData);
+	public ResponseEntity<StreamingResponseBody> downloadImage(@PathVariable long id,
+            @RequestParam(name = "size", defaultValue = "original") String size, WebRequest webRequest) throws IOException {
+        VarianteImagen variante = VarianteImagen.of(size);
+        if (variante == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        ContenidoImagen contenido = imagenService.getContenidoImagen(id);
+        if (contenido == null) {
+            return ResponseEntity.notFound().build();
+        }
+        variante = disponible(id, variante);
+        String etag = contenido.etag(variante);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(sinEtag(cabeceras(contenido, variante))).build();
+        }
+        // La cache basta para el 304; antes de enviar el contenido se comprueba que la imagen no se ha borrado
+        contenido = imagenService.getContenidoImagenActual(id);
+        if (contenido == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (variante == VarianteImagen.ORIGINAL && Boolean.TRUE.equals(webRequest.getAttribute(SENDFILE_SUPPORT, RequestAttributes.SCOPE_REQUEST))) {
+            Path fichero = imagenService.getFichero(id);
+            if (fichero != null) {
+                // Sin cuerpo: Tomcat envia el fichero del almacen directamente al socket (sendfile)
+                long tamano = Files.size(fichero);
+                webRequest.setAttribute(SENDFILE_FILENAME, fichero.toString(), RequestAttributes.SCOPE_REQUEST);
+                webRequest.setAttribute(SENDFILE_START, 0L, RequestAttributes.SCOPE_REQUEST);
+                webRequest.setAttribute(SENDFILE_END, tamano, RequestAttributes.SCOPE_REQUEST);
+                return ResponseEntity.ok().headers(sinEtag(cabeceras(contenido, variante))).contentLength(tamano).build();
+            }
+        }
+		// La imagen se descomprime directamente sobre la respuesta
+		VarianteImagen servida = variante;
+		StreamingResponseBody imageData = servida == VarianteImagen.ORIGINAL
+            ? out -> imagenService.downloadImage(id, out)
+            : out -> imagenService.downloadVariante(id, servida, out);
+		return ResponseEntity.ok().headers(sinEtag(cabeceras(contenido, variante))).body(imageData);
 	}
 
+    // Descarga parcial: a partir de un Resource, Spring responde 206 con los rangos pedidos
+    // (y 304 si coincide el ETag)
+    @GetMapping(value = "/imagen/{id}", headers = HttpHeaders.RANGE)
+    public ResponseEntity<Resource> downloadImageRange(@PathVariable long id,
+            @RequestParam(name = "size", defaultValue = "original") String size) throws IOException {
+        VarianteImagen variante = VarianteImagen.of(size);
+        if (variante == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        ContenidoImagen contenido = imagenService.getContenidoImagenActual(id);
+        if (contenido == null) {
+            return ResponseEntity.notFound().build();
+        }
+        variante = disponible(id, variante);
+        Resource imageData;
+        if (variante == VarianteImagen.ORIGINAL) {
+            imageData = imagenService.getResource(id);
+        } else {
+            ByteArrayOutputStream reducida = new ByteArrayOutputStream();
+            imagenService.downloadVariante(id, variante, reducida);
+            imageData = new ByteArrayResource(reducida.toByteArray());
+        }
+        return ResponseEntity.ok().headers(cabeceras(contenido, variante)).body(imageData);
+    }
+
+    // La variante se genera (o se descarta) antes de responder: un fallo al decodificar no puede cortar
+    // una respuesta 200 ya enviada
+    private VarianteImagen disponible(long id, VarianteImagen variante) throws IOException {
+        if (variante != VarianteImagen.ORIGINAL && !imagenService.prepararVariante(id, variante)) {
+            return VarianteImagen.ORIGINAL;
+        }
+        return variante;
+    }
+
+    // checkNotModified ya pone el ETag en la respuesta: repetirlo en la entidad lo duplicaria
+    private static HttpHeaders sinEtag(HttpHeaders cabeceras) {
+        cabeceras.remove(HttpHeaders.ETAG);
+        return cabeceras;
+    }
+
+    private HttpHeaders cabeceras(ContenidoImagen contenido, VarianteImagen variante) {
+        HttpHeaders cabeceras = new HttpHeaders();
+        cabeceras.setContentType(MediaType.parseMediaType(contenido.tipoContenido(variante)));
+        cabeceras.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        String etag = contenido.etag(variante);
+        if (etag != null) {
+            cabeceras.setETag(etag);
+            // Privada salvo que se permita explicitamente a proxies compartidos guardar imagenes de pacientes
+            CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeImagenes)).immutable();
+            cabeceras.setCacheControl(cacheCompartida ? cacheControl.cachePublic() : cacheControl.cachePrivate());
+        } else {
+            // Imagenes anteriores al hash: sin validador, no se pueden guardar
+            cabeceras.setCacheControl(CacheControl.noStore());
+        }
+        return cabeceras;
+    }
+
     @GetMapping("/imagen/info/{id}")
-    public Imagen getImagen(@PathVariable("id") Long id){
-        return imagenService.getImagen(id);
+    public ResponseEntity<ImagenInfo> getImagen(@PathVariable("id") Long id){
+        ImagenInfo imagen = imagenService.getImagenInfo(id);
+        if (imagen != null) {
+            return ResponseEntity.ok(imagen);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
     }
 
     @GetMapping("/imagen/predict/{id}")
-    public ResponseEntity<?>  getImagenPrediction(@PathVariable("id") Long id){
+    public CompletableFuture<ResponseEntity<?>> getImagenPrediction(@PathVariable("id") Long id){
+        // El hilo de la peticion queda libre mientras el modelo responde
         try{
-            return ResponseEntity.ok("{\"prediction\": \""+imagenService.getNewPrediccion(id)+"\"}");
+            return imagenService.getNewPrediccion(id)
+                .<ResponseEntity<?>>thenApply(prediccion -> ResponseEntity.ok("{\"prediction\": \""+prediccion+"\"}"))
+                .exceptionally(e -> {
+                    log.warn("prediccion fallida imagen={}", id, e);
+                    return errorPrediccion(e);
+                });
         }
         catch(Exception e){
-            e.printStackTrace();
-            return ResponseEntity.internalServerError().body("Error al realizar la prediccion"+e.getMessage());
+            log.warn("prediccion fallida imagen={}", id, e);
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().body("Error al realizar la prediccion"+e.getMessage()));
         }
         
     }
  
+    // Prediccion por lotes: cada resultado se envia como evento SSE en cuanto esta disponible
+    @GetMapping("/imagen/predict/paciente/{id}")
+    public SseEmitter getPrediccionesPaciente(@PathVariable("id") Long id){
+        return enviarPredicciones(imagenService.getNewPrediccionesPaciente(id));
+    }
+
+    @PostMapping(value = "/imagen/predict", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public SseEmitter getPredicciones(@RequestBody List<Long> ids){
+        return enviarPredicciones(imagenService.getNewPredicciones(ids));
+    }
+
+    private SseEmitter enviarPredicciones(List<CompletableFuture<PrediccionResultado>> predicciones) {
+        SseEmitter emitter = new SseEmitter(PREDICCION_LOTE_TIMEOUT);
+        CompletableFuture<?>[] enviadas = predicciones.stream()
+            .map(prediccion -> prediccion.thenAccept(resultado -> {
+                try {
+                    emitter.send(SseEmitter.event().name("prediccion").data(resultado, MediaType.APPLICATION_JSON));
+                } catch (IOException e) {
+                    emitter.completeWithError(e);
+                }
+            }))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(enviadas).whenComplete((v, e) -> emitter.complete());
+        return emitter;
+    }
+ 
+    // Variantes reactivas: mientras el modelo responde no queda ningun hilo bloqueado
+    @GetMapping("/imagen/predict/reactivo/{id}")
+    public Mono<ResponseEntity<?>> getImagenPredictionReactiva(@PathVariable("id") Long id){
+        return imagenService.getNewPrediccionReactiva(id)
+            .<ResponseEntity<?>>map(prediccion -> ResponseEntity.ok("{\"prediction\": \""+prediccion+"\"}"))
+            .onErrorResume(e -> Mono.just(errorPrediccion(e)));
+    }
+
+    // Servicio de prediccion caido o saturado: 503 para que el cliente reintente; sin respuesta a tiempo: 504
+    private static ResponseEntity<?> errorPrediccion(Throwable e) {
+        Throwable causa = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        HttpStatus estado = HttpStatus.INTERNAL_SERVER_ERROR;
+        if (causa instanceof PredictorNoDisponibleException) {
+            estado = HttpStatus.SERVICE_UNAVAILABLE;
+        } else if (causa instanceof TimeoutException) {
+            estado = HttpStatus.GATEWAY_TIMEOUT;
+        }
+        return ResponseEntity.status(estado).body("Error al realizar la prediccion"+causa.getMessage());
+    }
+
+    @GetMapping(value = "/imagen/predict/reactivo/paciente/{id}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<PrediccionResultado>> getPrediccionesPacienteReactivas(@PathVariable("id") Long id){
+        return eventos(imagenService.getNewPrediccionesPacienteReactivas(id));
+    }
+
+    @PostMapping(value = "/imagen/predict/reactivo", consumes = {MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<PrediccionResultado>> getPrediccionesReactivas(@RequestBody List<Long> ids){
+        return eventos(imagenService.getNewPrediccionesReactivas(ids));
+    }
+
+    private Flux<ServerSentEvent<PrediccionResultado>> eventos(Flux<PrediccionResultado> predicciones) {
+        return predicciones.map(resultado -> ServerSentEvent.builder(resultado).event("prediccion").build());
+    }
+ 
 	@PostMapping(value ="/imagen",     consumes = { MediaType.MULTIPART_FORM_DATA_VALUE, MediaType.APPLICATION_JSON_VALUE} )
 	public ResponseEntity<?> uploadImage(@RequestPart("image") MultipartFile file,
             @RequestPart("paciente") Paciente paciente) throws IOException {
@@ -58,8 +269,13 @@ public class ImagenController {
 	}
 
     @GetMapping("/imagen/paciente/{id}")
-    public List<Imagen> getImagenes (@PathVariable("id") Long id) {
-        return imagenService.getImagenesPaciente(id);
+    public ResponseEntity<List<ImagenInfo>> getImagenes (@PathVariable("id") Long id,
+            @RequestParam(name = "after", required = false) Long after,
+            @PageableDefault(size = 50, sort = "id", direction = Sort.Direction.ASC) Pageable pageable) {
+        if (after != null) {
+            return Paginas.cursor(imagenService.getImagenesPaciente(id, after, pageable.getPageSize()), pageable.getPageSize(), ImagenInfo::getId);
+        }
+        return Paginas.pagina(imagenService.getImagenesPaciente(id, pageable), pageable);
     }
 
     @DeleteMapping("/imagen/{id}")
@@ -69,7 +285,7 @@ public class ImagenController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("error al eliminar imagen={}", id, e);
             return ResponseEntity.internalServerError().body("Error al eliminar la imagen");
         }
     }
@@ -0,0 +1,74 @@
+package com.uma.example.springuma.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.uma.example.springuma.model.FormatoImportacion;
+import com.uma.example.springuma.model.ImportacionInterrumpidaException;
+import com.uma.example.springuma.model.ImportacionService;
+import com.uma.example.springuma.model.ResultadoImportacion;
+import com.uma.example.springuma.utils.BoundedInputStream;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+// Altas masivas: el cuerpo de la peticion se lee en streaming, sin pasar por los limites de multipart;
+// su tamaño lo limita importacion.max-tamano. Responden 200 con el numero de filas importadas y las
+// filas rechazadas con su motivo, o 413 si se supera un limite de tamaño (con lo importado hasta entonces)
+@RestController
+public class ImportacionController {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    @Autowired
+    private ImportacionService importacionService;
+
+    @Value("${importacion.max-tamano:100MB}")
+    private DataSize maxTamano;
+
+    private interface Importacion {
+        ResultadoImportacion importar(InputStream contenido) throws IOException;
+    }
+
+    @PostMapping(value = "/importacion/medicos", consumes = {NDJSON, CSV})
+    public ResponseEntity<ResultadoImportacion> importarMedicos(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType tipo,
+            HttpServletRequest request) throws IOException {
+        return importar(request, in -> importacionService.importarMedicos(in, FormatoImportacion.of(tipo)));
+    }
+
+    @PostMapping(value = "/importacion/pacientes", consumes = {NDJSON, CSV})
+    public ResponseEntity<ResultadoImportacion> importarPacientes(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType tipo,
+            HttpServletRequest request) throws IOException {
+        return importar(request, in -> importacionService.importarPacientes(in, FormatoImportacion.of(tipo)));
+    }
+
+    // Zip con una carpeta por paciente (su dni) que contiene sus imagenes
+    @PostMapping(value = "/importacion/imagenes", consumes = "application/zip")
+    public ResponseEntity<ResultadoImportacion> importarImagenes(HttpServletRequest request) throws IOException {
+        return importar(request, importacionService::importarImagenes);
+    }
+
+    // Si se conoce el tamaño se rechaza antes de leer nada; si no (chunked), al pasar del limite
+    private ResponseEntity<ResultadoImportacion> importar(HttpServletRequest request, Importacion importacion) throws IOException {
+        if (request.getContentLengthLong() > maxTamano.toBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        try {
+            return ResponseEntity.ok(importacion.importar(new BoundedInputStream(request.getInputStream(), maxTamano.toBytes(),
+                "La peticion supera el tamaño maximo de " + maxTamano.toBytes() + " bytes")));
+        } catch (ImportacionInterrumpidaException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getResultado());
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.uma.example.springuma.controller;
 
+import java.net.URI;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,40 +20,89 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.uma.example.springuma.model.BusquedaInformes;
 import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.InformeInfo;
 import com.uma.example.springuma.model.InformeService;
+import com.uma.example.springuma.model.Validador;
 
 @RestController
 public class InformeController {
+    private static final Logger log = LoggerFactory.getLogger(InformeController.class);
+
     
     @Autowired
     private InformeService informeService;
     
+    // El contenido del informe solo se consulta si el cliente no tiene ya la respuesta
     @GetMapping("/informe/{id}")
-    public Informe getInforme(@PathVariable("id") Long id) {
-        return informeService.getInforme(id);
+    public ResponseEntity<InformeInfo> getInforme(@PathVariable("id") Long id, WebRequest webRequest) {
+        Validador validador = informeService.getValidadorInforme(id);
+        if (validador.elementos() > 0 && webRequest.checkNotModified(Etags.debil(id, validador.modificado()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok(informeService.getInformeInfo(id));
     }
 
     @GetMapping("informe/imagen/{id}")
-    public List<Informe> getInformes(@PathVariable("id") Long id) {
-        return informeService.getInformesImagen(id);
+    public ResponseEntity<List<InformeInfo>> getInformes(@PathVariable("id") Long id,
+            @RequestParam(name = "after", required = false) Long after,
+            @PageableDefault(size = 50, sort = "id", direction = Sort.Direction.ASC) Pageable pageable,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(Etags.debil(informeService.getValidadorInformesImagen(id)))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        if (after != null) {
+            return Paginas.cursor(informeService.getInformesImagen(id, after, pageable.getPageSize()), pageable.getPageSize(), InformeInfo::getId);
+        }
+        return Paginas.pagina(informeService.getInformesImagen(id, pageable), pageable);
+    }
+
+    // Busqueda de texto en el contenido de los informes, ordenada por relevancia, con los fragmentos
+    // coincidentes resaltados. etiqueta filtra por la clase predicha (0: no cancer, 1: cancer)
+    @GetMapping("/informe/busqueda")
+    public ResponseEntity<List<BusquedaInformes.Encontrado>> buscarInformes(@RequestParam(name = "q", required = false) String texto,
+            @RequestParam(name = "etiqueta", required = false) String etiqueta,
+            @RequestParam(name = "estado", required = false) Informe.EstadoPrediccion estado,
+            @PageableDefault(size = 20) Pageable pageable) {
+        BusquedaInformes resultado = informeService.buscar(texto, etiqueta, estado, pageable);
+        return Paginas.pagina(resultado.informes(), pageable, resultado.total(), resultado.totalExacto());
     }
 
     
     @PostMapping(value = "/informe",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
 	public ResponseEntity<?> saveInforme(@RequestBody Informe informe) {
         try{
-            informeService.addInforme(informe);
-            return ResponseEntity.status(201).build();
+            // La prediccion queda pendiente: se consulta en la URI devuelta en Location
+            Informe guardado = informeService.addInforme(informe);
+            return ResponseEntity.created(URI.create("/informe/" + guardado.getId() + "/prediccion")).build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("error al guardar informe imagen={}", informe.getImagen() != null ? informe.getImagen().getId() : null, e);
             return ResponseEntity.internalServerError().body("El informe ya existe");
         }
 	}
 
+    // Quien espera la prediccion consulta con If-None-Match: 304 hasta que cambia el informe
+    @GetMapping("/informe/{id}/prediccion")
+    public ResponseEntity<?> getPrediccion(@PathVariable("id") Long id, WebRequest webRequest) {
+        Informe informe = informeService.getInforme(id);
+        if (informe == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified(Etags.debil(id, informe.getModificado()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        Map<String, Object> prediccion = new LinkedHashMap<>();
+        prediccion.put("estado", informe.getEstadoPrediccion());
+        prediccion.put("prediccion", informe.getPrediccion());
+        return ResponseEntity.ok(prediccion);
+    }
+
     @DeleteMapping("/informe/{id}")
     public ResponseEntity<?> deleteInforme(@PathVariable("id") Long id) {
         try{
@@ -52,7 +110,7 @@ public class InformeController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("error al eliminar informe={}", id, e);
             return ResponseEntity.internalServerError().body("Error al eliminar el informe");
         }
     }
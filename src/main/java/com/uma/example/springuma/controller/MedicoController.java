@@ -1,7 +1,10 @@
 package com.uma.example.springuma.controller;
 
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,19 +14,26 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.uma.example.springuma.model.Medico;
 import com.uma.example.springuma.model.MedicoService;
 
 @RestController
 public class MedicoController {
+    private static final Logger log = LoggerFactory.getLogger(MedicoController.class);
+
     
     @Autowired
     private MedicoService medicoService;
 
     @GetMapping("/medico/{id}")
-    public Medico getMedico(@PathVariable("id") Long id){
-        return medicoService.getMedico(id);
+    public ResponseEntity<Medico> getMedico(@PathVariable("id") Long id, WebRequest webRequest){
+        Medico medico = medicoService.getMedico(id);
+        if (webRequest.checkNotModified(Etags.debil(medico.getId(), medico.getModificado()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok(medico);
     }
 
     @PostMapping(value = "/medico",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
@@ -44,7 +54,7 @@ public class MedicoController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("error al actualizar medico={}", medico.getId(), e);
             return ResponseEntity.internalServerError().body("Error al actualizar el medico");
         }
     }
@@ -53,7 +63,7 @@ public class MedicoController {
     public ResponseEntity<?> deleteMedico(@PathVariable("id") Long id) {
         try{
             Medico medico = medicoService.getMedico(id);
-            System.out.println(medico);
+            log.debug("eliminar medico={} encontrado={}", id, medico != null);
             if (medico != null) {
                 medicoService.removeMedicoID(id);
                 return ResponseEntity.ok().build();
@@ -63,16 +73,19 @@ public class MedicoController {
             
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("error al eliminar medico={}", id, e);
             return ResponseEntity.internalServerError().body("Error al eliminar el medico");
         }
     }
 
     // Buscar un medico por su dni
     @GetMapping("/medico/dni/{dni}")
-    public ResponseEntity<Medico> getMedicoByDni(@PathVariable("dni") String dni) {
+    public ResponseEntity<Medico> getMedicoByDni(@PathVariable("dni") String dni, WebRequest webRequest) {
         Medico medico = medicoService.getMedicoByDni(dni);
         if (medico != null) {
+            if (webRequest.checkNotModified(Etags.debil(medico.getId(), medico.getModificado()))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
             return ResponseEntity.ok(medico);
         } else {
             return ResponseEntity.notFound().build();
@@ -2,7 +2,13 @@ package com.uma.example.springuma.controller;
 
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,25 +17,44 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.uma.example.springuma.model.Paciente;
 import com.uma.example.springuma.model.PacienteService;
 
 @RestController
 public class PacienteController {
+    private static final Logger log = LoggerFactory.getLogger(PacienteController.class);
+
     
     @Autowired
     private PacienteService pacienteService;
     
+    // El paciente se serializa con su medico: el ETag cambia con cualquiera de los dos
     @GetMapping("/paciente/{id}")
-    public Paciente getPaciente(@PathVariable("id") Long id) {
-        return pacienteService.getPaciente(id);
+    public ResponseEntity<Paciente> getPaciente(@PathVariable("id") Long id, WebRequest webRequest) {
+        Paciente paciente = pacienteService.getPaciente(id);
+        long medico = paciente.getMedico() != null ? paciente.getMedico().getModificado() : 0;
+        if (webRequest.checkNotModified(Etags.debil(paciente.getId(), paciente.getModificado(), medico))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok(paciente);
     }
 
     @GetMapping("/paciente/medico/{id}")
-    public List<Paciente> getPacientes(@PathVariable("id") Long id) {
-        return pacienteService.getPacientesMedico(id);
+    public ResponseEntity<List<Paciente>> getPacientes(@PathVariable("id") Long id,
+            @RequestParam(name = "after", required = false) Long after,
+            @PageableDefault(size = 50, sort = "id", direction = Sort.Direction.ASC) Pageable pageable,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(Etags.debil(pacienteService.getValidadorPacientesMedico(id)))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        if (after != null) {
+            return Paginas.cursor(pacienteService.getPacientesMedico(id, after, pageable.getPageSize()), pageable.getPageSize(), Paciente::getId);
+        }
+        return Paginas.pagina(pacienteService.getPacientesMedico(id, pageable), pageable);
     }
 
     @PostMapping(value = "/paciente",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
@@ -50,7 +75,7 @@ public class PacienteController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("error al actualizar paciente={}", paciente.getId(), e);
             return ResponseEntity.internalServerError().body("Error al actualizar el paciente ");
         }
     }
@@ -59,7 +84,7 @@ public class PacienteController {
     public ResponseEntity<?> deleteCuenta(@PathVariable("id") Long id) {
         try{
             Paciente paciente = pacienteService.getPaciente(id);
-            System.out.println(paciente);
+            log.debug("eliminar paciente={} encontrado={}", id, paciente != null);
             if (paciente != null) {
                 pacienteService.removePaciente(paciente);
                 return ResponseEntity.ok().build();
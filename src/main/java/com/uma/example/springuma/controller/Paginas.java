@@ -0,0 +1,62 @@
+package com.uma.example.springuma.controller;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+// Respuesta de los listados paginados. El cuerpo sigue siendo un array JSON; la siguiente pagina
+// se indica en la cabecera Link y, en la paginacion por cursor, tambien en X-Next-Cursor.
+// page/size/sort los resuelve Spring Data (spring.data.web.pageable.*), que limita el tamaño maximo.
+final class Paginas {
+
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+    static final String TOTAL_COUNT = "X-Total-Count";
+
+    private Paginas() {
+    }
+
+    // Cursor: after es el id del ultimo elemento recibido
+    static <T> ResponseEntity<List<T>> cursor(List<T> elementos, int size, ToLongFunction<T> id) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+        if (elementos.size() == size) {
+            long siguiente = id.applyAsLong(elementos.get(elementos.size() - 1));
+            String link = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", siguiente)
+                .replaceQueryParam("page")
+                .toUriString();
+            respuesta.header(NEXT_CURSOR, Long.toString(siguiente))
+                .header(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+        return respuesta.body(elementos);
+    }
+
+    static <T> ResponseEntity<List<T>> pagina(List<T> elementos, Pageable pageable) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+        if (elementos.size() == pageable.getPageSize()) {
+            String link = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("page", pageable.getPageNumber() + 1)
+                .toUriString();
+            respuesta.header(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+        return respuesta.body(elementos);
+    }
+
+    // Listados con total conocido (busqueda): la siguiente pagina existe si quedan resultados detras de esta
+    static <T> ResponseEntity<List<T>> pagina(List<T> elementos, Pageable pageable, long total, boolean totalExacto) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+        if (totalExacto) {
+            respuesta.header(TOTAL_COUNT, Long.toString(total));
+        }
+        if (pageable.getOffset() + pageable.getPageSize() < total) {
+            String link = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("page", pageable.getPageNumber() + 1)
+                .toUriString();
+            respuesta.header(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+        return respuesta.body(elementos);
+    }
+}
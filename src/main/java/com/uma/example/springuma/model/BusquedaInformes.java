@@ -0,0 +1,12 @@
+package com.uma.example.springuma.model;
+
+import java.util.List;
+
+// Pagina de resultados de la busqueda de texto en los informes, ordenados por relevancia.
+// Por encima de unos miles de coincidencias el total es una cota inferior (totalExacto = false).
+public record BusquedaInformes(long total, boolean totalExacto, List<Encontrado> informes) {
+
+    // resaltado: fragmentos del contenido con los terminos buscados entre <em></em> (HTML escapado)
+    public record Encontrado(InformeInfo informe, float puntuacion, String resaltado) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.uma.example.springuma.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Acceso a la cache de segundo nivel de Hibernate: invalidaciones que Hibernate no puede deducir
+// (borrados en cascada hechos por la base de datos) y estadisticas de aciertos por region
+@Component
+public class CacheSegundoNivel {
+
+    private static final String[] REGIONES = {
+        Medico.class.getName(), Medico.class.getName() + "##NaturalId",
+        Paciente.class.getName(), Paciente.class.getName() + "##NaturalId",
+        "default-query-results-region"
+    };
+
+    private final SessionFactory sessionFactory;
+
+    @Autowired
+    public CacheSegundoNivel(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    public void evictMedico(long id) {
+        sessionFactory.getCache().evictEntityData(Medico.class, id);
+        sessionFactory.getCache().evictNaturalIdData(Medico.class);
+    }
+
+    public void evictPaciente(long id) {
+        sessionFactory.getCache().evictEntityData(Paciente.class, id);
+        sessionFactory.getCache().evictNaturalIdData(Paciente.class);
+    }
+
+    // Al borrar un medico, la base de datos borra sus pacientes (ON DELETE CASCADE) sin pasar por Hibernate
+    public void evictPacientesDeMedico() {
+        sessionFactory.getCache().evictEntityData(Paciente.class);
+        sessionFactory.getCache().evictNaturalIdData(Paciente.class);
+        sessionFactory.getCache().evictQueryRegions();
+    }
+
+    public Map<String, Map<String, Object>> getEstadisticas() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Map<String, Object>> regiones = new LinkedHashMap<>();
+        for (String region : REGIONES) {
+            CacheRegionStatistics estadisticas = statistics.getCacheRegionStatistics(region);
+            if (estadisticas != null) {
+                Map<String, Object> valores = estadisticas(estadisticas.getHitCount(), estadisticas.getMissCount());
+                valores.put("puts", estadisticas.getPutCount());
+                regiones.put(region, valores);
+            }
+        }
+        return regiones;
+    }
+
+    static Map<String, Object> estadisticas(long hits, long misses) {
+        Map<String, Object> valores = new LinkedHashMap<>();
+        valores.put("hits", hits);
+        valores.put("misses", misses);
+        valores.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return valores;
+    }
+}
@@ -0,0 +1,17 @@
+package com.uma.example.springuma.model;
+
+// El circuit breaker ha rechazado la llamada sin llegar al servicio: no es un fallo de la prediccion,
+// que puede repetirse a partir de 'disponibleEn' (instante en ms en que el circuito deja pasar una prueba)
+public class CircuitoAbiertoException extends PredictorNoDisponibleException {
+
+    private final long disponibleEn;
+
+    public CircuitoAbiertoException(String message, long disponibleEn) {
+        super(message);
+        this.disponibleEn = disponibleEn;
+    }
+
+    public long getDisponibleEn() {
+        return disponibleEn;
+    }
+}
@@ -0,0 +1,18 @@
+package com.uma.example.springuma.model;
+
+// Lo necesario para validar y servir la descarga de una imagen sin leer su contenido. Una imagen no
+// cambia una vez subida, asi que el hash identifica de forma fuerte cada una de sus variantes
+public record ContenidoImagen(long id, String hash, String tipoContenido) {
+
+    // null si la imagen es anterior al hash
+    public String etag(VarianteImagen variante) {
+        if (hash == null) {
+            return null;
+        }
+        return "\"" + (variante == VarianteImagen.ORIGINAL ? hash : hash + "-" + variante.getNombre()) + "\"";
+    }
+
+    public String tipoContenido(VarianteImagen variante) {
+        return variante == VarianteImagen.ORIGINAL ? tipoContenido : VarianteImagen.TIPO_CONTENIDO;
+    }
+}
@@ -0,0 +1,100 @@
+package com.uma.example.springuma.model;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+// Imagenes que usan un mismo contenido de un almacen (ImageStore). Con cero referencias el contenido
+// se puede borrar del almacen.
+@Entity
+@Table(name = "contenido_referencia")
+public class ContenidoReferencia implements Persistable<String> {
+
+    // almacen + ":" + hash
+    @Id
+    @Column(name = "clave", length = 80)
+    private String clave;
+
+    @Column(name = "hash", length = 64, nullable = false)
+    private String hash;
+
+    @Column(name = "almacen", length = 8, nullable = false)
+    private String almacen;
+
+    @Column(name = "referencias", nullable = false)
+    private long referencias;
+
+    // Con la clave asignada, save() haria un merge: si otra subida acaba de crear la fila, la
+    // sobrescribiria en lugar de fallar por clave duplicada
+    @Transient
+    private boolean nueva;
+
+    public ContenidoReferencia() {
+    }
+
+    public ContenidoReferencia(String almacen, String hash, long referencias) {
+        this.clave = clave(almacen, hash);
+        this.hash = hash;
+        this.almacen = almacen;
+        this.referencias = referencias;
+        this.nueva = true;
+    }
+
+    @PostLoad
+    @PostPersist
+    void guardada() {
+        this.nueva = false;
+    }
+
+    @Override
+    public String getId() {
+        return clave;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nueva;
+    }
+
+    public static String clave(String almacen, String hash) {
+        return almacen + ":" + hash;
+    }
+
+    public String getClave() {
+        return clave;
+    }
+
+    public void setClave(String clave) {
+        this.clave = clave;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getAlmacen() {
+        return almacen;
+    }
+
+    public void setAlmacen(String almacen) {
+        this.almacen = almacen;
+    }
+
+    public long getReferencias() {
+        return referencias;
+    }
+
+    public void setReferencias(long referencias) {
+        this.referencias = referencias;
+    }
+}
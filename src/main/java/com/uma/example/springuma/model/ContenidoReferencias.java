@@ -0,0 +1,120 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Cuenta cuantas imagenes usan cada contenido de un almacen. Una subida cuyo contenido ya esta guardado
+// solo suma una referencia; el contenido se escribe con la primera y se borra cuando ya no queda ninguna.
+// Quien escribe el contenido lo hace antes de que su referencia sea visible para los demas, y el borrado
+// solo ocurre con la fila de referencias bloqueada: una subida simultanea del mismo contenido espera y,
+// si la fila ya no existe, vuelve a escribirlo.
+@Component
+public class ContenidoReferencias {
+
+    private static final Logger log = LoggerFactory.getLogger(ContenidoReferencias.class);
+
+    private final RepositoryContenidoReferencia repository;
+    private final TransactionTemplate nueva;
+
+    public ContenidoReferencias(RepositoryContenidoReferencia repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.nueva = new TransactionTemplate(transactionManager);
+        this.nueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Suma una referencia al contenido y, si nadie mas lo usa, lo guarda desde 'fichero'. Devuelve true si
+    // se ha escrito. La referencia se suma en la transaccion de quien llama, la misma que inserta la imagen;
+    // si esa transaccion se deshace, se quita tambien lo que no se deshace con ella (la fila creada en su
+    // propia transaccion y el contenido escrito)
+    @Transactional(rollbackFor = IOException.class)
+    public boolean adquirir(ImageStore store, String hash, Path fichero) throws IOException {
+        String clave = ContenidoReferencia.clave(store.getTipo(), hash);
+        if (repository.incrementar(clave) == 1) {
+            // Fila con cero referencias: un borrado que no llego a terminar pudo dejarla sin contenido
+            if (repository.findReferenciasByClave(clave).orElse(0L) > 1) {
+                return false;
+            }
+            store.save(hash, fichero);
+            alDeshacer(clave, store, hash, false);
+            return true;
+        }
+        store.save(hash, fichero);
+        try {
+            // En su propia transaccion: si otra subida ha creado la fila a la vez, el conflicto
+            // no deshace la transaccion de quien llama
+            nueva.executeWithoutResult(status -> repository.saveAndFlush(new ContenidoReferencia(store.getTipo(), hash, 1)));
+        } catch (DataIntegrityViolationException e) {
+            // La fila y el contenido son de la otra subida: deshacer esta solo resta su referencia
+            repository.incrementar(clave);
+            return true;
+        }
+        alDeshacer(clave, store, hash, true);
+        return true;
+    }
+
+    private void alDeshacer(String clave, ImageStore store, String hash, boolean filaCreada) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    nueva.executeWithoutResult(s -> {
+                        if (filaCreada) {
+                            repository.decrementar(clave);
+                        }
+                        borrarSinReferencias(clave, store, hash);
+                    });
+                } catch (RuntimeException e) {
+                    log.warn("no se ha podido quitar la referencia de una subida deshecha hash={} almacen={}",
+                        hash, store.getTipo(), e);
+                }
+            }
+        });
+    }
+
+    // Resta la referencia de una imagen borrada. Si era la ultima, al confirmarse el borrado se quita
+    // la fila y el contenido del almacen, en una transaccion nueva que mantiene la fila bloqueada
+    @Transactional
+    public void liberar(Imagen imagen, ImageStore store) {
+        String clave = ContenidoReferencia.clave(imagen.getAlmacen(), imagen.getHash());
+        if (repository.decrementar(clave) == 0 || repository.findReferenciasByClave(clave).orElse(0L) > 0) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    nueva.executeWithoutResult(status -> borrarSinReferencias(clave, store, imagen.getHash()));
+                } catch (RuntimeException e) {
+                    // La fila sigue con cero referencias: la siguiente subida de este contenido lo reescribe
+                    log.warn("no se ha podido borrar el contenido sin referencias hash={} almacen={}",
+                        imagen.getHash(), imagen.getAlmacen(), e);
+                }
+            }
+        });
+    }
+
+    private void borrarSinReferencias(String clave, ImageStore store, String hash) {
+        if (repository.deleteSinReferencias(clave) == 1) {
+            try {
+                store.delete(hash);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.uma.example.springuma.model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+import org.hibernate.engine.jdbc.BlobProxy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Guarda el contenido en la tabla imagen_contenido con el codec configurado.
+// Las imagenes anteriores al almacen siguen leyendose (deflate) de su columna file_content.
+@Component
+public class DatabaseImageStore implements ImageStore {
+
+    public static final String TIPO = "db";
+
+    // Bytes necesarios para reconocer el formato de la imagen
+    private static final int CABECERA = 12;
+
+    @Autowired
+    private RepositoryImagenContenido repositoryImagenContenido;
+
+    @Autowired
+    private RepositoryImagenVariante repositoryImagenVariante;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // auto: sin comprimir si la imagen ya viene comprimida (PNG, JPEG...), deflate en otro caso
+    @Value("${imagen.codec:auto}")
+    private String codec;
+
+    @Value("${imagen.codec.level:6}")
+    private int nivel;
+
+    @Override
+    public String getTipo() {
+        return TIPO;
+    }
+
+    // El codec solo se aplica a los contenidos nuevos: las subidas repetidas no llegan hasta aqui.
+    // fichero -> codec -> fichero temporal -> BLOB, sin pasar por un byte[] con la imagen completa.
+    // Como las variantes, va en su propia transaccion por si otra subida guarda el mismo contenido a la vez
+    @Override
+    public void save(String hash, Path fichero) throws IOException {
+        if (repositoryImagenContenido.existsById(hash)) {
+            return;
+        }
+        ImageCodec imageCodec = elegirCodec(fichero);
+        Path codificado = imageCodec == ImageCodec.NONE ? fichero : Files.createTempFile("imagen", ".bin");
+        try {
+            if (codificado != fichero) {
+                try (InputStream in = Files.newInputStream(fichero);
+                     OutputStream out = Files.newOutputStream(codificado)) {
+                    imageCodec.encode(in, out, nivel);
+                }
+            }
+            TransactionTemplate nueva = new TransactionTemplate(transactionManager);
+            nueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            try (InputStream in = Files.newInputStream(codificado)) {
+                long tamano = Files.size(codificado);
+                nueva.executeWithoutResult(status -> repositoryImagenContenido.saveAndFlush(
+                    new ImagenContenido(hash, BlobProxy.generateProxy(in, tamano), imageCodec)));
+            } catch (DataIntegrityViolationException e) {
+                // El contenido de ambas es identico
+            }
+        } finally {
+            if (codificado != fichero) {
+                Files.deleteIfExists(codificado);
+            }
+        }
+    }
+
+    // Necesita una transaccion abierta mientras se lee el stream
+    @Override
+    public InputStream open(Imagen imagen) throws IOException {
+        try {
+            Blob blob = imagen.getFile_content();
+            if (blob != null) {
+                return ImageCodec.DEFLATE.decode(blob.getBinaryStream());
+            }
+            ImagenContenido contenido = repositoryImagenContenido.findById(imagen.getHash())
+                .orElseThrow(() -> new FileNotFoundException("Contenido no encontrado: " + imagen.getHash()));
+            return contenido.getCodec().decode(contenido.getContenido().getBinaryStream());
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private ImageCodec elegirCodec(Path fichero) throws IOException {
+        if (!"auto".equalsIgnoreCase(codec)) {
+            return ImageCodec.valueOf(codec.toUpperCase());
+        }
+        byte[] cabecera;
+        try (InputStream in = Files.newInputStream(fichero)) {
+            cabecera = in.readNBytes(CABECERA);
+        }
+        return ImageUtils.isCompressedFormat(cabecera, cabecera.length) ? ImageCodec.NONE : ImageCodec.DEFLATE;
+    }
+
+    // Las variantes ya son JPEG: se guardan sin codec. Van en su propia transaccion para que, si otra
+    // peticion ha guardado la misma variante a la vez, el conflicto no deshaga la transaccion de quien llama
+    @Override
+    public void saveVariante(String hash, VarianteImagen variante, byte[] contenido) {
+        String clave = ImagenVariante.clave(hash, variante);
+        if (repositoryImagenVariante.existsById(clave)) {
+            return;
+        }
+        TransactionTemplate nueva = new TransactionTemplate(transactionManager);
+        nueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            nueva.executeWithoutResult(status ->
+                repositoryImagenVariante.saveAndFlush(new ImagenVariante(hash, variante, BlobProxy.generateProxy(contenido))));
+        } catch (DataIntegrityViolationException e) {
+            // El contenido de ambas es identico
+        }
+    }
+
+    // Como open, necesita una transaccion abierta mientras se lee el stream
+    @Override
+    public InputStream openVariante(String hash, VarianteImagen variante) throws IOException {
+        ImagenVariante guardada = repositoryImagenVariante.findById(ImagenVariante.clave(hash, variante)).orElse(null);
+        if (guardada == null) {
+            return null;
+        }
+        try {
+            return guardada.getContenido().getBinaryStream();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        repositoryImagenContenido.deleteById(hash);
+        repositoryImagenVariante.deleteByHash(hash);
+    }
+}
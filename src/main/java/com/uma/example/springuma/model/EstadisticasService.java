@@ -0,0 +1,37 @@
+package com.uma.example.springuma.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class EstadisticasService {
+
+    @Autowired
+    private CacheSegundoNivel cacheSegundoNivel;
+
+    @Autowired
+    private PrediccionCache prediccionCache;
+
+    @Autowired
+    private PrediccionCircuitBreaker prediccionCircuitBreaker;
+
+    public Map<String, Map<String, Object>> getEstadisticasCache() {
+        Map<String, Map<String, Object>> caches = new LinkedHashMap<>(cacheSegundoNivel.getEstadisticas());
+        Map<String, Object> predicciones = CacheSegundoNivel.estadisticas(prediccionCache.getHits(), prediccionCache.getMisses());
+        predicciones.put("elementos", prediccionCache.size());
+        caches.put("predicciones", predicciones);
+        return caches;
+    }
+
+    public Map<String, Object> getEstadisticasPredictor() {
+        Map<String, Object> predictor = new LinkedHashMap<>();
+        predictor.put("estado", prediccionCircuitBreaker.getEstado());
+        predictor.put("fallosSeguidos", prediccionCircuitBreaker.getFallosSeguidos());
+        predictor.put("aperturas", prediccionCircuitBreaker.getAperturas());
+        predictor.put("rechazadas", prediccionCircuitBreaker.getRechazadas());
+        return predictor;
+    }
+}
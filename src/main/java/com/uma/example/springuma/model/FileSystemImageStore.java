@@ -0,0 +1,127 @@
+package com.uma.example.springuma.model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+// Guarda cada imagen como un fichero cuyo nombre es el hash de su contenido, repartido en
+// subdirectorios (ab/cd/abcd...) para no acumular miles de ficheros en un mismo directorio.
+// El contenido se guarda sin comprimir (PNG/JPEG ya lo estan) para que Tomcat pueda enviar el fichero
+// tal cual con sendfile (ImagenController), sin copiarlo a la JVM.
+@Component
+public class FileSystemImageStore implements ImageStore {
+
+    public static final String TIPO = "fs";
+
+    private final Path directorio;
+
+    public FileSystemImageStore(@Value("${imagen.store.path:./imagenes}") String directorio) {
+        this.directorio = Paths.get(directorio).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String getTipo() {
+        return TIPO;
+    }
+
+    // En el mismo sistema de ficheros que el almacen, para que save pueda moverlo de forma atomica
+    @Override
+    public Path crearTemporal() throws IOException {
+        Path temporal = directorio.resolve("tmp");
+        Files.createDirectories(temporal);
+        return Files.createTempFile(temporal, "imagen", ".part");
+    }
+
+    @Override
+    public void save(String hash, Path fichero) throws IOException {
+        Path destino = ruta(hash);
+        Files.createDirectories(destino.getParent());
+        Files.move(fichero, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public InputStream open(Imagen imagen) throws IOException {
+        return Files.newInputStream(existente(imagen));
+    }
+
+    @Override
+    public Resource getResource(Imagen imagen) throws IOException {
+        return new FileSystemResource(existente(imagen));
+    }
+
+    // Mismo patron que save: se escribe en tmp y se mueve de forma atomica, asi una peticion
+    // concurrente nunca lee una variante a medio escribir
+    @Override
+    public void saveVariante(String hash, VarianteImagen variante, byte[] contenido) throws IOException {
+        Path destino = ruta(hash, variante);
+        if (Files.exists(destino)) {
+            return;
+        }
+        Path temporal = directorio.resolve("tmp");
+        Files.createDirectories(temporal);
+        Path fichero = Files.createTempFile(temporal, "variante", ".part");
+        try {
+            Files.write(fichero, contenido);
+            Files.createDirectories(destino.getParent());
+            Files.move(fichero, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(fichero);
+        }
+    }
+
+    @Override
+    public InputStream openVariante(String hash, VarianteImagen variante) throws IOException {
+        try {
+            return Files.newInputStream(ruta(hash, variante));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        List<Path> ficheros = new ArrayList<>();
+        ficheros.add(ruta(hash));
+        for (VarianteImagen variante : VarianteImagen.values()) {
+            if (variante != VarianteImagen.ORIGINAL) {
+                ficheros.add(ruta(hash, variante));
+            }
+        }
+        borrar(ficheros);
+    }
+
+    private static void borrar(List<Path> ficheros) throws IOException {
+        for (Path fichero : ficheros) {
+            Files.deleteIfExists(fichero);
+        }
+    }
+
+    Path ruta(String hash) {
+        return directorio.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    // Las variantes van en el mismo directorio que el original: ab/cd/abcd...-thumbnail.jpg
+    Path ruta(String hash, VarianteImagen variante) {
+        return ruta(hash).resolveSibling(hash + "-" + variante.getNombre() + ".jpg");
+    }
+
+    private Path existente(Imagen imagen) throws IOException {
+        Path fichero = ruta(imagen.getHash());
+        if (!Files.exists(fichero)) {
+            throw new FileNotFoundException("Contenido no encontrado: " + imagen.getHash());
+        }
+        return fichero;
+    }
+}
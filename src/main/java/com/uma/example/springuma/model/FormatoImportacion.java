@@ -0,0 +1,30 @@
+package com.uma.example.springuma.model;
+
+import org.springframework.http.MediaType;
+
+// Formatos aceptados por los endpoints de importacion: un objeto JSON por linea o CSV con cabecera
+public enum FormatoImportacion {
+
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String tipoContenido;
+
+    FormatoImportacion(String tipoContenido) {
+        this.tipoContenido = tipoContenido;
+    }
+
+    public String getTipoContenido() {
+        return tipoContenido;
+    }
+
+    // null si el tipo no corresponde a ningun formato
+    public static FormatoImportacion of(MediaType tipo) {
+        for (FormatoImportacion formato : values()) {
+            if (tipo != null && tipo.isCompatibleWith(MediaType.parseMediaType(formato.tipoContenido))) {
+                return formato;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.core.io.Resource;
+
+// Almacen del contenido de las imagenes. La entidad Imagen solo guarda el hash del contenido
+// y el tipo de almacen (getAlmacen) que lo contiene. Cada contenido se guarda una vez aunque lo usen
+// varias imagenes; ContenidoReferencias decide cuando se escribe y cuando se borra.
+public interface ImageStore {
+
+    // Identificador que se guarda en Imagen.almacen
+    String getTipo();
+
+    // Fichero temporal en el que ImagenService copia la imagen subida mientras calcula su hash
+    default Path crearTemporal() throws IOException {
+        return Files.createTempFile("imagen", ".part");
+    }
+
+    // Guarda como contenido de 'hash' la imagen original ya copiada en 'fichero' (crearTemporal).
+    // Solo se llama con la primera referencia al contenido; puede mover el fichero en lugar de copiarlo
+    void save(String hash, Path fichero) throws IOException;
+
+    // Devuelve el contenido original (sin comprimir) de la imagen
+    InputStream open(Imagen imagen) throws IOException;
+
+    default void transferTo(Imagen imagen, OutputStream out) throws IOException {
+        try (InputStream in = open(imagen)) {
+            in.transferTo(out);
+        }
+    }
+
+    // Contenido original como fichero con acceso aleatorio (peticiones Range), o null si el almacen no lo tiene
+    default Resource getResource(Imagen imagen) throws IOException {
+        return null;
+    }
+
+    // Guarda una variante reducida (VarianteImagen) junto al contenido original con ese hash
+    void saveVariante(String hash, VarianteImagen variante, byte[] contenido) throws IOException;
+
+    // Devuelve la variante ya generada, o null si todavia no existe
+    InputStream openVariante(String hash, VarianteImagen variante) throws IOException;
+
+    // Se llama cuando ya no queda ninguna imagen que use ese contenido, dentro de la transaccion que
+    // borra su fila de referencias; borra tambien sus variantes
+    void delete(String hash) throws IOException;
+}
@@ -1,10 +1,13 @@
 package com.uma.example.springuma.model;
 
+import java.sql.Blob;
 import java.util.Calendar;
 
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.engine.jdbc.BlobProxy;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.*;
@@ -13,7 +16,8 @@ import jakarta.persistence.*;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // para ignorar el serializador al devolver un objeto cuenta
 public class Imagen {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "imagen_seq")
+    @SequenceGenerator(name = "imagen_seq", sequenceName = "imagen_seq", allocationSize = 50)
     private long id;
 
     @Column(name = "nombre")
@@ -30,23 +34,62 @@ public class Imagen {
         this.fecha = fecha;
     }
     // Relación con Paciente (muchas imágenes pueden pertenecer a un paciente)
-    @ManyToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "paciente_id")
     private Paciente paciente;
 
+    // Solo las imagenes subidas antes de ImageStore guardan aqui su contenido; las nuevas lo
+    // tienen en el almacen indicado por 'almacen', direccionado por 'hash'
     @Lob
+    @JsonIgnore
     @Column(name = "file_content")
-    private byte[] file_content;
+    private Blob file_content;
 
-    public byte[] getFile_content(){
+    public Blob getFile_content(){
          return file_content;
      }
 
-     public void setFile_content(byte[] file_content){
+     public void setFile_content(Blob file_content){
          this.file_content = file_content;
 }
 
+    // SHA-256 del contenido sin comprimir: referencia en el ImageStore y clave de la cache de predicciones
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    // Tipo de ImageStore que guarda el contenido (null: columna file_content)
+    @Column(name = "almacen", length = 8)
+    private String almacen;
+
+    public String getAlmacen() {
+        return almacen;
+    }
+
+    public void setAlmacen(String almacen) {
+        this.almacen = almacen;
+    }
+
+    // Tipo MIME del original, detectado al subirla (null: imagenes anteriores, que se sirven como image/png)
+    @Column(name = "tipo_contenido", length = 100)
+    private String tipoContenido;
+
+    public String getTipoContenido() {
+        return tipoContenido;
+    }
+
+    public void setTipoContenido(String tipoContenido) {
+        this.tipoContenido = tipoContenido;
+    }
+
     // Constructor vacío
     public Imagen() {
     }
@@ -96,7 +139,7 @@ public class Imagen {
     }
     public Imagen(byte[] file_content, Paciente paciente)
     {
-        this.file_content = file_content;
+        this.file_content = BlobProxy.generateProxy(file_content);
         this.paciente = paciente;
     }
 
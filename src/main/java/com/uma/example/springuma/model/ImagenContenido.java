@@ -0,0 +1,63 @@
+package com.uma.example.springuma.model;
+
+import java.sql.Blob;
+
+import com.uma.example.springuma.utils.ImageCodec;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+
+// Contenido comprimido de una imagen guardado en la base de datos, direccionado por su hash
+@Entity
+public class ImagenContenido {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Lob
+    @Column(name = "contenido")
+    private Blob contenido;
+
+    // Codec con el que se escribio 'contenido' (null: DEFLATE, el formato original)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "codec", length = 16)
+    private ImageCodec codec;
+
+    public ImagenContenido() {
+    }
+
+    public ImagenContenido(String hash, Blob contenido, ImageCodec codec) {
+        this.hash = hash;
+        this.contenido = contenido;
+        this.codec = codec;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public Blob getContenido() {
+        return contenido;
+    }
+
+    public void setContenido(Blob contenido) {
+        this.contenido = contenido;
+    }
+
+    public ImageCodec getCodec() {
+        return codec == null ? ImageCodec.DEFLATE : codec;
+    }
+
+    public void setCodec(ImageCodec codec) {
+        this.codec = codec;
+    }
+}
@@ -0,0 +1,45 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+// Metadatos de una imagen sin su contenido: es lo que devuelven los listados,
+// que asi nunca leen la columna file_content
+public class ImagenInfo {
+
+    private long id;
+    private String nombre;
+    private Calendar fecha;
+    private Paciente paciente;
+
+    public ImagenInfo(long id, String nombre, Calendar fecha, Paciente paciente) {
+        this.id = id;
+        this.nombre = nombre;
+        this.fecha = fecha;
+        this.paciente = paciente;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public Calendar getFecha() {
+        return fecha;
+    }
+
+    public Paciente getPaciente() {
+        return paciente;
+    }
+
+    @Override
+    public String toString() {
+        return "ImagenInfo{" +
+                "id=" + id +
+                ", nombre='" + nombre + '\'' +
+                ", paciente=" + paciente +
+                '}';
+    }
+}
@@ -0,0 +1,186 @@
+package com.uma.example.springuma.model;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import jakarta.annotation.PreDestroy;
+
+// Inferencia en CPU dentro del propio proceso con ONNX Runtime, a partir del modelo exportado a ONNX
+// (predictor.local.modelo). No depende de la red ni de los limites de la API de HuggingFace.
+@Component
+@ConditionalOnProperty(name = "predictor.tipo", havingValue = "local")
+public class ImagenLocalPredictor implements Predictor {
+
+    // Lo que devuelve la ultima capa del modelo (predictor.local.salida): probabilidades (sigmoid/softmax
+    // incluidas en el modelo) o logits sin normalizar
+    public enum Salida { PROBABILIDADES, LOGITS }
+
+    private final OrtEnvironment entorno;
+    private final OrtSession sesion;
+    private final String entrada;
+    // Disposicion de la entrada: [N, 3, H, W] (PyTorch) o [N, H, W, 3] (Keras)
+    private final boolean nchw;
+    private final int alto;
+    private final int ancho;
+    private final float escala;
+    private final Salida salida;
+    private final ExecutorService executor;
+    // Cada hilo del pool reserva una vez su lienzo y su tensor de entrada y los reutiliza en cada prediccion
+    private final ThreadLocal<Preprocesado> preprocesado = ThreadLocal.withInitial(Preprocesado::new);
+
+    public ImagenLocalPredictor(@Value("${predictor.local.modelo}") String modelo,
+                                @Value("${predictor.local.hilos:0}") int hilos,
+                                @Value("${predictor.local.hilos-por-inferencia:1}") int hilosPorInferencia,
+                                @Value("${predictor.local.tamano:224}") int tamano,
+                                @Value("${predictor.local.escala:0.00392156862745098}") float escala,
+                                @Value("${predictor.local.salida:probabilidades}") String salida) throws OrtException {
+        this.entorno = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions opciones = new OrtSession.SessionOptions()) {
+            opciones.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            // El paralelismo viene del pool: cada inferencia usa pocos hilos para no competir entre ellas
+            opciones.setIntraOpNumThreads(hilosPorInferencia);
+            this.sesion = entorno.createSession(modelo, opciones);
+        }
+        Map.Entry<String, NodeInfo> info = sesion.getInputInfo().entrySet().iterator().next();
+        this.entrada = info.getKey();
+        long[] shape = ((TensorInfo) info.getValue().getInfo()).getShape();
+        if (shape.length != 4 || (shape[1] != 3 && shape[3] != 3)) {
+            throw new IllegalStateException("Entrada del modelo no soportada: se espera [N, H, W, 3] o [N, 3, H, W]");
+        }
+        this.nchw = shape[1] == 3 && shape[3] != 3;
+        long altoModelo = nchw ? shape[2] : shape[1];
+        long anchoModelo = nchw ? shape[3] : shape[2];
+        // Dimensiones dinamicas (-1) en el modelo: se usa predictor.local.tamano
+        this.alto = altoModelo > 0 ? (int) altoModelo : tamano;
+        this.ancho = anchoModelo > 0 ? (int) anchoModelo : tamano;
+        this.escala = escala;
+        this.salida = Salida.valueOf(salida.toUpperCase());
+
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "predictor-local-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> query(byte[] file_data) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return predecir(file_data);
+            }
+            catch(Exception e){
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private Map<String, Double> predecir(byte[] imagen) throws IOException, OrtException {
+        Preprocesado datos = preprocesado.get();
+        datos.cargar(imagen);
+        try (OnnxTensor tensor = OnnxTensor.createTensor(entorno, datos.tensor, datos.shape);
+             OrtSession.Result resultado = sesion.run(Map.of(entrada, tensor))) {
+            FloatBuffer tensorSalida = ((OnnxTensor) resultado.get(0)).getFloatBuffer();
+            float[] valores = new float[tensorSalida.remaining()];
+            tensorSalida.get(valores);
+            return puntuaciones(valores, salida);
+        }
+    }
+
+    // Mismo formato que la API: probabilidad de cada clase. Con una sola salida es la de la clase 1
+    static Map<String, Double> puntuaciones(float[] valores, Salida salida) {
+        double cancer;
+        if (valores.length == 1) {
+            cancer = salida == Salida.LOGITS ? 1 / (1 + Math.exp(-valores[0])) : probabilidad(valores[0]);
+        } else if (valores.length == 2) {
+            cancer = salida == Salida.LOGITS ? 1 / (1 + Math.exp(valores[0] - valores[1])) : probabilidad(valores[1]);
+        } else {
+            throw new IllegalStateException("Salida del modelo no soportada: " + valores.length + " valores");
+        }
+        Map<String, Double> resultado = new HashMap<>();
+        resultado.put("LABEL_0", 1 - cancer);
+        resultado.put("LABEL_1", cancer);
+        return resultado;
+    }
+
+    private static double probabilidad(float valor) {
+        if (!(valor >= 0 && valor <= 1)) {
+            throw new IllegalStateException("El modelo ha devuelto " + valor + ", que no es una probabilidad: "
+                + "si devuelve logits, configure predictor.local.salida=logits");
+        }
+        return valor;
+    }
+
+    private final class Preprocesado {
+        private final BufferedImage lienzo = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        private final Graphics2D graficos = lienzo.createGraphics();
+        private final int[] pixeles = ((DataBufferInt) lienzo.getRaster().getDataBuffer()).getData();
+        // Buffer directo: ONNX Runtime lo usa sin copiarlo
+        private final FloatBuffer tensor = ByteBuffer.allocateDirect(Float.BYTES * 3 * ancho * alto)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        private final long[] shape = nchw ? new long[] {1, 3, alto, ancho} : new long[] {1, alto, ancho, 3};
+
+        Preprocesado() {
+            graficos.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graficos.setBackground(Color.BLACK);
+        }
+
+        void cargar(byte[] imagen) throws IOException {
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(imagen));
+            if (original == null) {
+                throw new IOException("Formato de imagen no soportado");
+            }
+            graficos.clearRect(0, 0, ancho, alto);
+            graficos.drawImage(original, 0, 0, ancho, alto, null);
+            tensor.clear();
+            if (nchw) {
+                for (int desplazamiento = 16; desplazamiento >= 0; desplazamiento -= 8) {
+                    for (int pixel : pixeles) {
+                        tensor.put(((pixel >> desplazamiento) & 0xFF) * escala);
+                    }
+                }
+            } else {
+                for (int pixel : pixeles) {
+                    tensor.put(((pixel >> 16) & 0xFF) * escala);
+                    tensor.put(((pixel >> 8) & 0xFF) * escala);
+                    tensor.put((pixel & 0xFF) * escala);
+                }
+            }
+            tensor.rewind();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws OrtException {
+        executor.shutdown();
+        sesion.close();
+    }
+}
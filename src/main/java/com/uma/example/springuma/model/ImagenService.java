@@ -1,22 +1,150 @@
 package com.uma.example.springuma.model;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.uma.example.springuma.utils.ImageUtils;
+import com.uma.example.springuma.utils.LruCache;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class ImagenService {
 
+    private static final Logger log = LoggerFactory.getLogger(ImagenService.class);
+
+    // Bytes necesarios para reconocer el formato de la imagen
+    private static final int CABECERA = 12;
+
     @Autowired
     private RepositoryImagen repositoryImagen;
 
+    @Autowired
+    private Predictor predictor;
+
+    // Solo existe con el predictor remoto (predictor.tipo=api)
+    @Autowired(required = false)
+    private ImagenWebClientPredictor imagenWebClientPredictor;
+
+    @Autowired
+    private PrediccionCache prediccionCache;
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    @Autowired
+    private InformeIndice informeIndice;
+
+    @Autowired
+    private List<ImageStore> imageStores;
+
+    @Autowired
+    private ContenidoReferencias contenidoReferencias;
+
+    // Almacen en el que se guardan las imagenes nuevas
+    @Value("${imagen.store.tipo:" + DatabaseImageStore.TIPO + "}")
+    private String tipoAlmacen;
+
+    // Pool de Spring Boot (spring.task.execution.*): acota cuantas imagenes se leen y descomprimen a la vez
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private Executor taskExecutor;
+
+    // Predicciones de un lote que pueden estar esperando al modelo a la vez en la variante reactiva
+    @Value("${predictor.reactivo.lote-en-vuelo:256}")
+    private int loteEnVuelo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Lado mayor, en pixeles, de las variantes reducidas y calidad del JPEG en el que se guardan
+    @Value("${imagen.variantes.thumbnail:256}")
+    private int ladoThumbnail;
+
+    @Value("${imagen.variantes.preview:1024}")
+    private int ladoPreview;
+
+    @Value("${imagen.variantes.calidad:0.85}")
+    private float calidadVariantes;
+
+    // true: se generan en segundo plano al subir la imagen; false: la primera vez que se piden
+    @Value("${imagen.variantes.al-subir:true}")
+    private boolean variantesAlSubir;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Variantes generadas en segundo plano: pool y cola propios, acotados, para que las subidas e
+    // importaciones masivas no dejen sin hilos a las lecturas y predicciones de applicationTaskExecutor.
+    // Con la cola llena se descartan: esas variantes se generan la primera vez que se pidan
+    private final ThreadPoolExecutor variantesExecutor;
+
+    // id -> hash y tipo de cada imagen: las peticiones condicionales (If-None-Match) se responden sin ir a la base de datos
+    private final LruCache<Long, ContenidoImagen> contenidos;
+
+    // id -> si la imagen tiene variantes reducidas: las que no se pueden decodificar no se vuelven a intentar
+    private final LruCache<Long, Boolean> conVariantes;
+
+    public ImagenService(PlatformTransactionManager transactionManager,
+                         @Value("${imagen.http.cache.max-entries:10000}") int maxContenidos,
+                         @Value("${imagen.variantes.hilos:2}") int hilosVariantes,
+                         @Value("${imagen.variantes.cola:1000}") int colaVariantes) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger contador = new AtomicInteger();
+        this.variantesExecutor = new ThreadPoolExecutor(hilosVariantes, hilosVariantes, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(colaVariantes), r -> {
+                Thread t = new Thread(r, "variantes-" + contador.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, (tarea, executor) -> meterRegistry.counter("imagen.variantes.descartadas").increment());
+        // Sin caducidad: el contenido de una imagen no cambia una vez subida
+        this.contenidos = new LruCache<>(maxContenidos, 0);
+        this.conVariantes = new LruCache<>(maxContenidos, 0);
+    }
+
     public List<Imagen> getAllImagenes() {
         return repositoryImagen.findAll();
     }
@@ -25,15 +153,174 @@ public class ImagenService {
         return repositoryImagen.getReferenceById(id);
     }
 
-    public String getNewPrediccion(Long id) throws IOException, Exception{
-        Map<String, Double> response = 
-        ImagenAPIPredictor.query(ImageUtils.decompressImage(repositoryImagen.getReferenceById(id).getFile_content()));
-        System.out.println("resp");
-        System.out.println( response);
+    public ImagenInfo getImagenInfo(Long id) {
+        return repositoryImagen.findInfoById(id).orElse(null);
+    }
+
+    public CompletableFuture<String> getNewPrediccion(Long id) {
+        Imagen dbImagen = repositoryImagen.findById(id).orElseThrow();
+        return predecir(dbImagen).thenApply(ImagenService::describirPrediccion);
+    }
+
+    // Prediccion de todas las imagenes de un paciente: una sola consulta para cargarlas y
+    // lectura, descompresion y llamada al modelo en paralelo. Cada resultado se completa por separado.
+    public List<CompletableFuture<PrediccionResultado>> getNewPrediccionesPaciente(Long pacienteId) {
+        return predecir(repositoryImagen.getByPacienteId(pacienteId));
+    }
+
+    public List<CompletableFuture<PrediccionResultado>> getNewPredicciones(List<Long> ids) {
+        return predecir(repositoryImagen.findAllById(ids));
+    }
+
+    private List<CompletableFuture<PrediccionResultado>> predecir(List<Imagen> imagenes) {
+        List<CompletableFuture<PrediccionResultado>> resultados = new ArrayList<>();
+        for (Imagen imagen : imagenes) {
+            resultados.add(predecir(imagen).handle((response, e) -> e == null
+                ? new PrediccionResultado(imagen.getId(), describirPrediccion(response), null)
+                : new PrediccionResultado(imagen.getId(), null, e.getMessage())));
+        }
+        return resultados;
+    }
+
+    // Tiempo total de cada prediccion (cache, lectura de la imagen y modelo) y su resultado
+    private CompletableFuture<Map<String, Double>> predecir(Imagen imagen) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        return predecirSinMedir(imagen).whenComplete((response, e) -> muestra.stop(tiempo("prediccion", e)));
+    }
+
+    private CompletableFuture<Map<String, Double>> predecirSinMedir(Imagen imagen) {
+        Map<String, Double> cached = prediccionCache.get(imagen.getHash());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> readImage(imagen)), taskExecutor)
+            .thenCompose(contenido -> {
+                // Con el hash ya guardado la cache se ha consultado antes de leer la imagen
+                boolean calculado = imagen.getHash() == null;
+                String clave = hash(imagen, contenido);
+                Map<String, Double> cachedHash = calculado ? prediccionCache.get(clave) : null;
+                if (cachedHash != null) {
+                    return CompletableFuture.completedFuture(cachedHash);
+                }
+                Timer.Sample muestra = Timer.start(meterRegistry);
+                return predictor.query(contenido)
+                    .whenComplete((response, e) -> muestra.stop(tiempo("prediccion.modelo", e)))
+                    .thenApply(response -> {
+                        log.debug("prediccion imagen={} hash={} respuesta={}", imagen.getId(), clave, response);
+                        prediccionCache.put(clave, response);
+                        return response;
+                    });
+            });
+    }
+
+    private Timer tiempo(String nombre, Throwable error) {
+        return Timer.builder(nombre)
+            .tag("resultado", resultado(error))
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private static String resultado(Throwable error) {
+        Throwable causa = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (causa == null) {
+            return "ok";
+        } else if (causa instanceof PredictorNoDisponibleException) {
+            return "no_disponible";
+        } else if (causa instanceof TimeoutException) {
+            return "timeout";
+        }
+        return "error";
+    }
+
+    // Imagenes subidas antes de guardar el hash: se calcula una vez y se persiste
+    private String hash(Imagen imagen, byte[] contenido) {
+        String hash = imagen.getHash();
+        if (hash == null) {
+            hash = ImageUtils.hashImage(contenido);
+            repositoryImagen.updateHash(imagen.getId(), hash);
+            contenidos.remove(imagen.getId());
+        }
+        return hash;
+    }
+
+    // Variantes reactivas: la llamada al modelo no bloquea ningun hilo (ImagenWebClientPredictor) y
+    // el acceso a base de datos y la lectura del contenido, que si bloquean, van a Schedulers.boundedElastic()
+    public Mono<String> getNewPrediccionReactiva(Long id) {
+        return Mono.fromCallable(() -> repositoryImagen.findById(id).orElseThrow())
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(this::predecirReactivoMedido)
+            .map(ImagenService::describirPrediccion);
+    }
+
+    public Flux<PrediccionResultado> getNewPrediccionesPacienteReactivas(Long pacienteId) {
+        return Mono.fromCallable(() -> repositoryImagen.getByPacienteId(pacienteId))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMapMany(this::predecirReactivo);
+    }
+
+    public Flux<PrediccionResultado> getNewPrediccionesReactivas(List<Long> ids) {
+        return Mono.fromCallable(() -> repositoryImagen.findAllById(ids))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMapMany(this::predecirReactivo);
+    }
+
+    // flatMap limita cuantas predicciones del lote estan en curso; el resto se pide segun el cliente consume
+    private Flux<PrediccionResultado> predecirReactivo(List<Imagen> imagenes) {
+        return Flux.fromIterable(imagenes)
+            .flatMap(imagen -> predecirReactivoMedido(imagen)
+                .map(response -> new PrediccionResultado(imagen.getId(), describirPrediccion(response), null))
+                .onErrorResume(e -> Mono.just(new PrediccionResultado(imagen.getId(), null, e.getMessage()))),
+                loteEnVuelo);
+    }
+
+    private Mono<Map<String, Double>> predecirReactivoMedido(Imagen imagen) {
+        return medir("prediccion", predecirReactivo(imagen));
+    }
+
+    private Mono<Map<String, Double>> medir(String nombre, Mono<Map<String, Double>> prediccion) {
+        return Mono.defer(() -> {
+            Timer.Sample muestra = Timer.start(meterRegistry);
+            return prediccion
+                .doOnSuccess(response -> muestra.stop(tiempo(nombre, null)))
+                .doOnError(e -> muestra.stop(tiempo(nombre, e)));
+        });
+    }
+
+    private Mono<Map<String, Double>> predecirReactivo(Imagen imagen) {
+        Map<String, Double> cached = prediccionCache.get(imagen.getHash());
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        // hash() se ejecuta en el mismo hilo de boundedElastic que ha leido el contenido
+        return Mono.fromCallable(() -> transactionTemplate.execute(status -> readImage(imagen)))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(contenido -> {
+                // Con el hash ya guardado la cache se ha consultado antes de leer la imagen
+                boolean calculado = imagen.getHash() == null;
+                String clave = hash(imagen, contenido);
+                Map<String, Double> cachedHash = calculado ? prediccionCache.get(clave) : null;
+                if (cachedHash != null) {
+                    return Mono.just(cachedHash);
+                }
+                return medir("prediccion.modelo", consultarReactivo(contenido))
+                    .doOnNext(response -> {
+                        log.debug("prediccion imagen={} hash={} respuesta={}", imagen.getId(), clave, response);
+                        prediccionCache.put(clave, response);
+                    });
+            });
+    }
+
+    // El predictor local no hace E/S de red: su CompletableFuture ya se resuelve en su propio pool
+    private Mono<Map<String, Double>> consultarReactivo(byte[] contenido) {
+        if (imagenWebClientPredictor != null) {
+            return imagenWebClientPredictor.query(contenido);
+        }
+        return Mono.fromFuture(() -> predictor.query(contenido));
+    }
+
+    private static String describirPrediccion(Map<String, Double> response) {
         double score_0 = response.get("LABEL_0");
         double score_1 = response.get("LABEL_1");
-        System.out.println("resp");
-        System.out.println( response);
         String resulString;
         if (score_0 > score_1){
             resulString = "Not cancer (label 0),  score: " + score_0;
@@ -51,35 +338,318 @@ public class ImagenService {
         repositoryImagen.save(imagen);
     }
 
-    public void removeImagen(Imagen imagen) {
+    @Transactional
+    public void removeImagen(Imagen imagen) throws IOException {
+        Imagen dbImagen = repositoryImagen.findById(imagen.getId()).orElse(null);
+        if (dbImagen != null) {
+            olvidarInformes(repositoryInforme.findIdsByImagenId(dbImagen.getId()));
+            removeContenido(dbImagen);
+        }
+    }
+
+    @Transactional
+    public void removeImagenByID(Long id) throws IOException {
+        Imagen dbImagen = repositoryImagen.findById(id).orElse(null);
+        if (dbImagen != null) {
+            olvidarInformes(repositoryInforme.findIdsByImagenId(dbImagen.getId()));
+            removeContenido(dbImagen);
+        }
+    }
+
+    // Antes de borrar un paciente o un medico: el borrado en cascada de la base de datos no liberaria
+    // el contenido de sus imagenes en el almacen
+    @Transactional
+    public void removeImagenesPaciente(long pacienteId) {
+        olvidarInformes(repositoryInforme.findIdsByPacienteId(pacienteId));
+        repositoryImagen.getByPacienteId(pacienteId).forEach(this::removeContenido);
+    }
+
+    @Transactional
+    public void removeImagenesMedico(long medicoId) {
+        olvidarInformes(repositoryInforme.findIdsByMedicoId(medicoId));
+        repositoryImagen.getByPacienteMedicoId(medicoId).forEach(this::removeContenido);
+    }
+
+    // La base de datos borra en cascada los informes de las imagenes: se quitan del indice de busqueda
+    // cuando se confirma el borrado
+    private void olvidarInformes(List<Long> informes) {
+        informes.forEach(informeIndice::eliminarDespuesDelCommit);
+    }
+
+    // El contenido esta direccionado por hash: solo se borra si ninguna otra imagen lo usa
+    private void removeContenido(Imagen imagen) {
+        olvidar(imagen.getId());
         repositoryImagen.delete(imagen);
+        if (imagen.getAlmacen() != null) {
+            contenidoReferencias.liberar(imagen, store(imagen));
+        }
     }
 
-    public void removeImagenByID(Long id) {
-        repositoryImagen.deleteById(id);
+    public List<ImagenInfo> getImagenesPaciente(Long id, Pageable pageable) {
+        return repositoryImagen.findInfoByPacienteId(id, pageable);
     }
 
-    public List<Imagen> getImagenesPaciente(Long id) {
-        return repositoryImagen.getByPacienteId(id);
+    public List<ImagenInfo> getImagenesPaciente(Long id, long after, int size) {
+        return repositoryImagen.findInfoByPacienteIdAfter(id, after, Limit.of(size));
     }
 
+    // La referencia al contenido y la fila de la imagen se guardan en la misma transaccion
+    @Transactional(rollbackFor = IOException.class)
     public String uploadImage(MultipartFile file, Paciente paciente) throws IOException {
-        Imagen imagen = new Imagen();
-        imagen.setNombre(file.getOriginalFilename());
-        imagen.setFile_content(ImageUtils.compressImage(file.getBytes()));
-        imagen.setPaciente(paciente);
-        imagen.setFecha(Calendar.getInstance());
+        Imagen imagen = guardarContenido(file.getOriginalFilename(), file.getContentType(), file.getInputStream(), paciente);
         imagen = repositoryImagen.saveAndFlush(imagen);
         if (imagen != null) {
+            List<Imagen> guardadas = List.of(imagen);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    imagenesGuardadas(guardadas);
+                }
+            });
             return "{\"response\" : \"file uploaded successfully : " + file.getOriginalFilename()+"\"}";
         }
         return null;
     }
 
-    public byte[] downloadImage(long id) {
+    // Guarda el contenido en el almacen configurado y devuelve la imagen, todavia sin persistir.
+    // El hash se calcula antes de tocar el almacen: si el contenido ya esta guardado (la misma imagen
+    // subida otra vez, para el mismo u otro paciente) solo se suma una referencia, sin comprimirlo ni copiarlo.
+    // La referencia se suma en la transaccion en curso; sin ella (importaciones) se confirma al momento
+    Imagen guardarContenido(String nombre, String tipoDeclarado, InputStream contenido, Paciente paciente) throws IOException {
+        Imagen imagen = new Imagen();
+        imagen.setNombre(nombre);
+        imagen.setPaciente(paciente);
+        imagen.setFecha(Calendar.getInstance());
+        ImageStore imageStore = store(tipoAlmacen);
+        Path fichero = imageStore.crearTemporal();
+        try {
+            MessageDigest digest = ImageUtils.newImageDigest();
+            try (InputStream in = new BufferedInputStream(contenido)) {
+                imagen.setTipoContenido(tipoContenido(in, tipoDeclarado));
+                Files.copy(new DigestInputStream(in, digest), fichero, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = ImageUtils.toHex(digest.digest());
+            boolean nuevo = contenidoReferencias.adquirir(imageStore, hash, fichero);
+            meterRegistry.counter("imagen.subidas", "contenido", nuevo ? "nuevo" : "duplicado").increment();
+            imagen.setHash(hash);
+            imagen.setAlmacen(imageStore.getTipo());
+        } finally {
+            Files.deleteIfExists(fichero);
+        }
+        return imagen;
+    }
+
+    // Contenido guardado con guardarContenido para una imagen que al final no se ha insertado
+    void liberarContenido(Imagen imagen) {
+        contenidoReferencias.liberar(imagen, store(imagen));
+    }
+
+    // Imagenes recien guardadas: sus variantes se generan en segundo plano si asi esta configurado
+    void imagenesGuardadas(List<Imagen> imagenes) {
+        if (variantesAlSubir) {
+            imagenes.forEach(this::generarVariantesEnSegundoPlano);
+        }
+    }
+
+    // El tipo se deduce de los primeros bytes; el que declara el cliente solo si el formato no se reconoce
+    private static String tipoContenido(InputStream contenido, String declarado) throws IOException {
+        contenido.mark(CABECERA);
+        byte[] cabecera = contenido.readNBytes(CABECERA);
+        contenido.reset();
+        String tipo = ImageUtils.contentType(cabecera, cabecera.length);
+        if (tipo != null) {
+            return tipo;
+        }
+        return declarado != null ? declarado : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    private void generarVariantesEnSegundoPlano(Imagen imagen) {
+        variantesExecutor.execute(() -> {
+            try {
+                transactionTemplate.execute(status -> generarVariantes(imagen));
+            } catch (RuntimeException e) {
+                // Se volveran a intentar cuando se pidan
+                log.warn("no se han podido generar las variantes imagen={}", imagen.getId(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        variantesExecutor.shutdownNow();
+    }
+
+    // Se quita de la cache ahora y otra vez al confirmar el borrado: una peticion que la lea de la base
+    // de datos mientras tanto todavia veria la fila
+    private void olvidar(long id) {
+        contenidos.remove(id);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                contenidos.remove(id);
+            }
+        });
+    }
+
+    // Hash y tipo MIME de la imagen, o null si no existe. Puede venir de la cache: suficiente para
+    // responder 304, no para enviar el contenido (getContenidoImagenActual)
+    public ContenidoImagen getContenidoImagen(long id) {
+        ContenidoImagen contenido = contenidos.get(id);
+        if (contenido == null) {
+            contenido = repositoryImagen.findContenidoById(id).orElse(null);
+            if (contenido != null) {
+                contenidos.put(id, contenido);
+            }
+        }
+        return contenido;
+    }
+
+    // Como getContenidoImagen, pero siempre de la base de datos: confirma que la imagen sigue existiendo
+    // antes de responder 200 y corrige la cache
+    public ContenidoImagen getContenidoImagenActual(long id) {
+        ContenidoImagen contenido = repositoryImagen.findContenidoById(id).orElse(null);
+        if (contenido != null) {
+            contenidos.put(id, contenido);
+        } else {
+            contenidos.remove(id);
+        }
+        return contenido;
+    }
+
+    // Original con acceso aleatorio para las peticiones Range: el fichero del almacen si lo tiene,
+    // si no el contenido completo en memoria
+    @Transactional(readOnly = true)
+    public Resource getResource(long id) throws IOException {
+        Imagen imagen = repositoryImagen.getReferenceById(id);
+        Resource resource = imagen.getAlmacen() != null ? store(imagen).getResource(imagen) : null;
+        return resource != null ? resource : new ByteArrayResource(readImage(imagen));
+    }
+
+    // Fichero con el original si el almacen lo guarda en disco, para enviarlo con sendfile; null si no
+    @Transactional(readOnly = true)
+    public Path getFichero(long id) throws IOException {
+        Imagen imagen = repositoryImagen.getReferenceById(id);
+        Resource resource = imagen.getAlmacen() != null ? store(imagen).getResource(imagen) : null;
+        return resource != null && resource.isFile() ? resource.getFile().toPath() : null;
+    }
+
+    // La transaccion mantiene accesible el BLOB (almacen en base de datos) mientras se copia
+    @Transactional(readOnly = true)
+    public void downloadImage(long id, OutputStream out) throws IOException {
         Imagen dbImageData = repositoryImagen.getReferenceById(id);
-        byte[] images = ImageUtils.decompressImage(dbImageData.getFile_content());
-        return images;
+        store(dbImageData).transferTo(dbImageData, out);
+    }
+
+    // Se llama antes de responder: true si la variante esta guardada o se acaba de generar; false si el
+    // original no se puede decodificar (y se sirve el original en su lugar). El resultado se recuerda
+    @Transactional
+    public boolean prepararVariante(long id, VarianteImagen variante) throws IOException {
+        Boolean disponible = conVariantes.get(id);
+        if (disponible == null) {
+            Imagen imagen = repositoryImagen.getReferenceById(id);
+            disponible = tieneVariante(imagen, variante) || generarVariantes(imagen);
+            conVariantes.put(id, disponible);
+        }
+        return disponible;
+    }
+
+    // Variante reducida ya preparada (prepararVariante): si se ha borrado del almacen, se vuelve a generar
+    @Transactional
+    public void downloadVariante(long id, VarianteImagen variante, OutputStream out) throws IOException {
+        Imagen imagen = repositoryImagen.getReferenceById(id);
+        if (!tieneVariante(imagen, variante) && !generarVariantes(imagen)) {
+            throw new IOException("La imagen " + id + " no tiene variantes reducidas");
+        }
+        try (InputStream in = store(imagen).openVariante(imagen.getHash(), variante)) {
+            in.transferTo(out);
+        }
+    }
+
+    private boolean tieneVariante(Imagen imagen, VarianteImagen variante) throws IOException {
+        if (imagen.getHash() == null) {
+            return false;
+        }
+        try (InputStream in = store(imagen).openVariante(imagen.getHash(), variante)) {
+            return in != null;
+        }
+    }
+
+    // Decodifica el original una sola vez y reduce cada variante a partir de la anterior, de mayor a menor.
+    // false si ImageIO no sabe leer el original (WebP, JPEG 2000 sin plugin, contenido danado)
+    private boolean generarVariantes(Imagen imagen) {
+        if (imagen.getTipoContenido() != null && !ImageUtils.isReadable(imagen.getTipoContenido())) {
+            return sinVariantes(imagen, null);
+        }
+        byte[] original = readImage(imagen);
+        String hash = hash(imagen, original);
+        ImageStore imageStore = store(imagen);
+        BufferedImage reducida;
+        try {
+            reducida = ImageUtils.readImage(original);
+        } catch (IOException | RuntimeException e) {
+            return sinVariantes(imagen, e);
+        }
+        try {
+            for (VarianteImagen variante : List.of(VarianteImagen.PREVIEW, VarianteImagen.THUMBNAIL)) {
+                Timer.Sample muestra = Timer.start(meterRegistry);
+                reducida = ImageUtils.resizeImage(reducida, lado(variante));
+                byte[] contenido = ImageUtils.writeJpeg(reducida, calidadVariantes);
+                muestra.stop(meterRegistry.timer("imagen.variante", "variante", variante.getNombre()));
+                imageStore.saveVariante(hash, variante, contenido);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        conVariantes.put(imagen.getId(), Boolean.TRUE);
+        return true;
+    }
+
+    private boolean sinVariantes(Imagen imagen, Exception causa) {
+        log.info("la imagen {} ({}) no se puede reducir, se servira el original: {}", imagen.getId(),
+            imagen.getTipoContenido(), causa != null ? causa.getMessage() : "formato sin lector");
+        conVariantes.put(imagen.getId(), Boolean.FALSE);
+        return false;
+    }
+
+    private int lado(VarianteImagen variante) {
+        switch (variante) {
+            case THUMBNAIL:
+                return ladoThumbnail;
+            case PREVIEW:
+                return ladoPreview;
+            default:
+                throw new IllegalArgumentException("El original no se reduce");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public byte[] downloadImage(long id) {
+        return readImage(repositoryImagen.getReferenceById(id));
+    }
+
+    private byte[] readImage(Imagen imagen) {
+        if (imagen.getAlmacen() == null) {
+            // El contenido antiguo esta en la propia fila: se vuelve a cargar dentro de la transaccion actual
+            imagen = repositoryImagen.getReferenceById(imagen.getId());
+        }
+        try (InputStream in = store(imagen).open(imagen)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ImageStore store(Imagen imagen) {
+        return store(imagen.getAlmacen() == null ? DatabaseImageStore.TIPO : imagen.getAlmacen());
+    }
+
+    private ImageStore store(String tipo) {
+        for (ImageStore imageStore : imageStores) {
+            if (imageStore.getTipo().equals(tipo)) {
+                return imageStore;
+            }
+        }
+        throw new IllegalStateException("Almacen de imagenes desconocido: " + tipo);
     }
 
 }
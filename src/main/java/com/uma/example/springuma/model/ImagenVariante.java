@@ -0,0 +1,65 @@
+package com.uma.example.springuma.model;
+
+import java.sql.Blob;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+// Variante reducida (JPEG) de un contenido de imagen guardada en la base de datos
+@Entity
+@Table(indexes = @Index(name = "idx_imagen_variante_hash", columnList = "hash"))
+public class ImagenVariante {
+
+    // hash del original + "-" + variante
+    @Id
+    @Column(name = "clave", length = 80)
+    private String clave;
+
+    @Column(name = "hash", length = 64, nullable = false)
+    private String hash;
+
+    @Lob
+    @Column(name = "contenido")
+    private Blob contenido;
+
+    public ImagenVariante() {
+    }
+
+    public ImagenVariante(String hash, VarianteImagen variante, Blob contenido) {
+        this.clave = clave(hash, variante);
+        this.hash = hash;
+        this.contenido = contenido;
+    }
+
+    public static String clave(String hash, VarianteImagen variante) {
+        return hash + "-" + variante.getNombre();
+    }
+
+    public String getClave() {
+        return clave;
+    }
+
+    public void setClave(String clave) {
+        this.clave = clave;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public Blob getContenido() {
+        return contenido;
+    }
+
+    public void setContenido(Blob contenido) {
+        this.contenido = contenido;
+    }
+}
@@ -0,0 +1,128 @@
+package com.uma.example.springuma.model;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+// Variante no bloqueante de ImagenAPIPredictor: las peticiones en vuelo no ocupan hilos,
+// solo conexiones del pool de reactor-netty, atendidas por sus pocos hilos de event loop
+@Component
+@ConditionalOnProperty(name = "predictor.tipo", havingValue = "api", matchIfMissing = true)
+public class ImagenWebClientPredictor {
+
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final PrediccionCircuitBreaker breaker;
+    private final PrediccionBulkhead bulkhead;
+    private final long timeoutTotal;
+    private final Retry reintentos;
+
+    public ImagenWebClientPredictor(@Value("${predictor.url:" + ImagenAPIPredictor.API_URL + "}") String apiUrl,
+                                    @Value("${predictor.token:" + ImagenAPIPredictor.TOKEN + "}") String token,
+                                    @Value("${predictor.reactivo.max-conexiones:${predictor.concurrencia.max:10}}") int maxConexiones,
+                                    @Value("${predictor.reactivo.max-pendientes:1000}") int maxPendientes,
+                                    @Value("${predictor.timeout.connect-ms:5000}") int connectTimeout,
+                                    @Value("${predictor.timeout.lectura-ms:30000}") long responseTimeout,
+                                    @Value("${predictor.timeout.total-ms:60000}") long timeoutTotal,
+                                    @Value("${predictor.reintentos.max:3}") int maxReintentos,
+                                    @Value("${predictor.reintentos.backoff-ms:1000}") long backoffInicial,
+                                    @Value("${predictor.reintentos.backoff-max-ms:10000}") long backoffMax,
+                                    @Value("${predictor.pool.idle-timeout-ms:30000}") long idleTimeout,
+                                    PrediccionCircuitBreaker breaker,
+                                    PrediccionBulkhead bulkhead) {
+        // Cuando todas las conexiones estan ocupadas, las peticiones esperan en una cola acotada;
+        // si la cola se llena, fallan en lugar de acumularse sin limite (backpressure)
+        this.connectionProvider = ConnectionProvider.builder("predictor")
+                .maxConnections(maxConexiones)
+                .pendingAcquireMaxCount(maxPendientes)
+                .pendingAcquireTimeout(Duration.ofMillis(responseTimeout))
+                .maxIdleTime(Duration.ofMillis(idleTimeout))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .responseTimeout(Duration.ofMillis(responseTimeout));
+        this.webClient = WebClient.builder()
+                .baseUrl(apiUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader(HttpHeaders.AUTHORIZATION, token)
+                .build();
+        this.breaker = breaker;
+        this.bulkhead = bulkhead;
+        this.timeoutTotal = timeoutTotal;
+        // Mismos reintentos que ImagenAPIPredictor: solo el 503 del modelo cargando y el 429, con backoff y jitter
+        this.reintentos = Retry.backoff(maxReintentos, Duration.ofMillis(backoffInicial))
+                .maxBackoff(Duration.ofMillis(backoffMax))
+                .jitter(0.5)
+                .filter(Saturado.class::isInstance)
+                .onRetryExhaustedThrow((spec, senal) -> {
+                    breaker.fallo();
+                    return new PredictorNoDisponibleException("El modelo no esta disponible tras " + maxReintentos + " reintentos");
+                });
+    }
+
+    public Mono<Map<String, Double>> query(byte[] file_data) {
+        return Mono.defer(() -> {
+            try {
+                breaker.permitir();
+            } catch (PredictorNoDisponibleException e) {
+                return Mono.error(e);
+            }
+            // Cada intento ocupa un turno del bulkhead compartido con ImagenAPIPredictor; las esperas
+            // entre reintentos no
+            return bulkhead.limitar(enviar(file_data))
+                    .retryWhen(reintentos)
+                    .timeout(Duration.ofMillis(timeoutTotal))
+                    .doOnNext(json -> breaker.exito())
+                    .doOnError(e -> {
+                        boolean errorDelCliente = e instanceof PredictorException error && error.isErrorDelCliente();
+                        if (!(e instanceof PredictorNoDisponibleException) && !errorDelCliente) {
+                            breaker.fallo();
+                        }
+                    });
+        }).flatMap(json -> Mono.fromCallable(() -> ImagenAPIPredictor.processResponse(json)));
+    }
+
+    // Como en ImagenAPIPredictor, cualquier respuesta que no sea 2xx es un PredictorException con su codigo
+    private Mono<String> enviar(byte[] file_data) {
+        return webClient.post()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .bodyValue(file_data)
+                .exchangeToMono(response -> response.bodyToMono(String.class).defaultIfEmpty("").flatMap(cuerpo -> {
+                    int estado = response.statusCode().value();
+                    if (estado == HttpStatus.SERVICE_UNAVAILABLE.value() || estado == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                        return Mono.error(new Saturado());
+                    }
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return Mono.error(new PredictorException("El servicio de prediccion respondio " + estado + ": " + cuerpo, estado));
+                    }
+                    return Mono.just(cuerpo);
+                }));
+    }
+
+    // Senal interna para reintentar: no sale de esta clase
+    private static final class Saturado extends RuntimeException {
+        Saturado() {
+            super(null, null, false, false);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionProvider.dispose();
+    }
+}
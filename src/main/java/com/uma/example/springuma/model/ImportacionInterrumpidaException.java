@@ -0,0 +1,19 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+
+// La importacion se ha detenido al superar un limite de tamaño (importacion.*). Los lotes ya
+// confirmados se quedan guardados: el resultado parcial lo indica, con el motivo entre sus errores
+public class ImportacionInterrumpidaException extends IOException {
+
+    private final ResultadoImportacion resultado;
+
+    public ImportacionInterrumpidaException(String message, ResultadoImportacion resultado) {
+        super(message);
+        this.resultado = resultado;
+    }
+
+    public ResultadoImportacion getResultado() {
+        return resultado;
+    }
+}
@@ -0,0 +1,415 @@
+package com.uma.example.springuma.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uma.example.springuma.utils.BoundedInputStream;
+import com.uma.example.springuma.utils.CsvParser;
+
+// Altas masivas de medicos, pacientes e imagenes. Las filas se leen en streaming y se guardan por
+// lotes, cada uno en su transaccion: con ids de secuencia (allocationSize 50) y
+// hibernate.jdbc.batch_size, cada lote se inserta en unas pocas sentencias JDBC agrupadas.
+// Una fila incorrecta se anota en el resultado y no detiene la importacion; superar un limite de
+// tamaño si (ImportacionInterrumpidaException).
+@Service
+public class ImportacionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionService.class);
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Filas por transaccion; conviene que sea multiplo de hibernate.jdbc.batch_size
+    @Value("${importacion.lote:500}")
+    private int lote;
+
+    @Value("${importacion.max-errores:1000}")
+    private int maxErrores;
+
+    // Tamaño maximo de cada imagen del zip y de todo su contenido descomprimido (frente a zip bombs)
+    @Value("${importacion.imagenes.max-imagen:10MB}")
+    private DataSize maxImagen;
+
+    @Value("${importacion.imagenes.max-descomprimido:2GB}")
+    private DataSize maxDescomprimido;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ImportacionService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Campos: dni (obligatorio), nombre, especialidad
+    public ResultadoImportacion importarMedicos(InputStream contenido, FormatoImportacion formato) throws IOException {
+        return importar(contenido, formato,
+            campos -> new Medico(obligatorio(campos, "dni"), campos.get("nombre"), campos.get("especialidad")),
+            (filas, rechazos) -> {
+                Set<String> existentes = new HashSet<>(repositoryMedico.findDniExistentes(filas.stream().map(fila -> fila.valor().getDni()).toList()));
+                List<Medico> nuevos = new ArrayList<>();
+                for (Fila<Medico> fila : filas) {
+                    if (!existentes.add(fila.valor().getDni())) {
+                        rechazos.add(new ResultadoImportacion.Error(fila.referencia(), "Ya existe un medico con dni " + fila.valor().getDni()));
+                    } else {
+                        nuevos.add(fila.valor());
+                    }
+                }
+                repositoryMedico.saveAll(nuevos);
+                return nuevos.size();
+            });
+    }
+
+    // Campos: dni (obligatorio), nombre, edad, cita y el medico por medicoDni o medicoId
+    // (en NDJSON tambien "medico": {"dni": ...} o {"id": ...})
+    public ResultadoImportacion importarPacientes(InputStream contenido, FormatoImportacion formato) throws IOException {
+        return importar(contenido, formato, ImportacionService::pacienteImportado, (filas, rechazos) -> {
+            Set<String> existentes = new HashSet<>(repositoryPaciente.findDniExistentes(
+                filas.stream().map(fila -> fila.valor().paciente().getDni()).toList()));
+            Map<String, Medico> medicosPorDni = new HashMap<>();
+            Map<Long, Medico> medicosPorId = new HashMap<>();
+            Set<String> dnis = new HashSet<>();
+            Set<Long> ids = new HashSet<>();
+            for (Fila<PacienteImportado> fila : filas) {
+                if (fila.valor().medicoDni() != null) {
+                    dnis.add(fila.valor().medicoDni());
+                } else if (fila.valor().medicoId() != null) {
+                    ids.add(fila.valor().medicoId());
+                }
+            }
+            // Los medicos de todo el lote en dos consultas
+            if (!dnis.isEmpty()) {
+                repositoryMedico.findByDniIn(dnis).forEach(medico -> medicosPorDni.put(medico.getDni(), medico));
+            }
+            if (!ids.isEmpty()) {
+                repositoryMedico.findAllById(ids).forEach(medico -> medicosPorId.put(medico.getId(), medico));
+            }
+            List<Paciente> nuevos = new ArrayList<>();
+            for (Fila<PacienteImportado> fila : filas) {
+                PacienteImportado importado = fila.valor();
+                Medico medico = importado.medicoDni() != null ? medicosPorDni.get(importado.medicoDni())
+                    : importado.medicoId() != null ? medicosPorId.get(importado.medicoId()) : null;
+                if (!existentes.add(importado.paciente().getDni())) {
+                    rechazos.add(new ResultadoImportacion.Error(fila.referencia(), "Ya existe un paciente con dni " + importado.paciente().getDni()));
+                } else if (medico == null && (importado.medicoDni() != null || importado.medicoId() != null)) {
+                    rechazos.add(new ResultadoImportacion.Error(fila.referencia(), "No existe el medico "
+                        + (importado.medicoDni() != null ? importado.medicoDni() : importado.medicoId())));
+                } else {
+                    importado.paciente().setMedico(medico);
+                    nuevos.add(importado.paciente());
+                }
+            }
+            repositoryPaciente.saveAll(nuevos);
+            return nuevos.size();
+        });
+    }
+
+    private static PacienteImportado pacienteImportado(Map<String, String> campos) {
+        String edad = campos.get("edad");
+        Paciente paciente = new Paciente(campos.get("nombre"), edad == null ? 0 : (int) numero("edad", edad),
+            campos.get("cita"), obligatorio(campos, "dni"), null);
+        String medicoId = campos.get("medicoId");
+        return new PacienteImportado(paciente, campos.get("medicoDni"), medicoId == null ? null : numero("medicoId", medicoId));
+    }
+
+    // Archivo zip con una carpeta por paciente, con su dni como nombre: 12345678A/mamografia.png.
+    // El contenido de cada imagen va directamente del zip al ImageStore; las filas se insertan por lotes.
+    // El contenido de una fila que al final no se inserta se libera
+    public ResultadoImportacion importarImagenes(InputStream contenido) throws IOException {
+        ResultadoImportacion resultado = new ResultadoImportacion(maxErrores);
+        Destino<Imagen> destino = new Destino<>() {
+            @Override
+            public int guardar(List<Fila<Imagen>> filas, List<ResultadoImportacion.Error> rechazos) {
+                List<Imagen> nuevas = repositoryImagen.saveAll(filas.stream().map(Fila::valor).toList());
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        imagenService.imagenesGuardadas(nuevas);
+                    }
+                });
+                return nuevas.size();
+            }
+
+            @Override
+            public void descartada(Fila<Imagen> fila) {
+                imagenService.liberarContenido(fila.valor());
+            }
+        };
+        Map<String, Paciente> pacientes = new HashMap<>();
+        List<Fila<Imagen>> pendientes = new ArrayList<>();
+        long descomprimido = 0;
+        try (ZipInputStream zip = new ZipInputStream(contenido)) {
+            ZipEntry entrada;
+            while ((entrada = zip.getNextEntry()) != null) {
+                String ruta = entrada.getName();
+                String[] partes = ruta.split("/");
+                String nombre = partes[partes.length - 1];
+                if (entrada.isDirectory() || nombre.startsWith(".") || ruta.startsWith("__MACOSX/")) {
+                    continue;
+                }
+                if (partes.length < 2) {
+                    resultado.fallo(ruta, "La imagen debe estar en la carpeta de su paciente (dni)");
+                    continue;
+                }
+                String dni = partes[partes.length - 2];
+                Paciente paciente = pacientes.computeIfAbsent(dni, repositoryPaciente::findByDni);
+                if (paciente == null) {
+                    resultado.fallo(ruta, "No existe el paciente con dni " + dni);
+                    continue;
+                }
+                long restante = maxDescomprimido.toBytes() - descomprimido;
+                boolean limiteImagen = maxImagen.toBytes() < restante;
+                BoundedInputStream imagen = new BoundedInputStream(StreamUtils.nonClosing(zip), Math.min(maxImagen.toBytes(), restante),
+                    limiteImagen ? "La imagen supera el tamaño maximo de " + maxImagen.toBytes() + " bytes"
+                        : "El archivo descomprimido supera el tamaño maximo de " + maxDescomprimido.toBytes() + " bytes");
+                try {
+                    pendientes.add(new Fila<>(ruta, imagenService.guardarContenido(nombre, null, imagen, paciente)));
+                    descomprimido += imagen.getLeidos();
+                } catch (BoundedInputStream.LimiteSuperadoException e) {
+                    if (!limiteImagen) {
+                        throw interrumpir(e.getMessage(), pendientes, destino, resultado);
+                    }
+                    resultado.fallo(ruta, e.getMessage());
+                    // El resto de la entrada tambien cuenta para el total descomprimido
+                    descomprimido += imagen.getLeidos() + drenar(zip, maxDescomprimido.toBytes() - descomprimido - imagen.getLeidos());
+                    if (descomprimido > maxDescomprimido.toBytes()) {
+                        throw interrumpir("El archivo descomprimido supera el tamaño maximo de " + maxDescomprimido.toBytes() + " bytes",
+                            pendientes, destino, resultado);
+                    }
+                    continue;
+                } catch (IOException | RuntimeException e) {
+                    resultado.fallo(ruta, mensaje(e));
+                    continue;
+                }
+                if (pendientes.size() >= lote) {
+                    guardarLote(pendientes, destino, resultado);
+                    pendientes = new ArrayList<>();
+                }
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            guardarLote(pendientes, destino, resultado);
+        }
+        log.info("importacion imagenes importadas={} fallidas={}", resultado.getImportados(), resultado.getFallidos());
+        return resultado;
+    }
+
+    private static <T> void descartar(Fila<T> fila, Destino<T> destino) {
+        try {
+            destino.descartada(fila);
+        } catch (RuntimeException e) {
+            log.warn("no se ha podido descartar la fila {} de la importacion", fila.referencia(), e);
+        }
+    }
+
+    // Lee y descarta lo que queda de la entrada actual, hasta max + 1 bytes; devuelve cuantos ha leido
+    private static long drenar(InputStream entrada, long max) throws IOException {
+        byte[] buffer = new byte[8192];
+        long leidos = 0;
+        int n;
+        while (leidos <= max && (n = entrada.read(buffer, 0, (int) Math.min(buffer.length, max - leidos + 1))) > 0) {
+            leidos += n;
+        }
+        return leidos;
+    }
+
+    // Las filas pendientes no se guardan: se anota el motivo y se liberan como si hubieran fallado
+    private <T> ImportacionInterrumpidaException interrumpir(String motivo, List<Fila<T>> pendientes, Destino<T> destino,
+                                                             ResultadoImportacion resultado) {
+        pendientes.forEach(fila -> descartar(fila, destino));
+        resultado.fallo("*", motivo + "; se ha detenido la importacion y no se han guardado las " + pendientes.size()
+            + " filas leidas desde el ultimo lote");
+        log.warn("importacion interrumpida importadas={} motivo={}", resultado.getImportados(), motivo);
+        return new ImportacionInterrumpidaException(motivo, resultado);
+    }
+
+    private <T> ResultadoImportacion importar(InputStream contenido, FormatoImportacion formato,
+                                              Function<Map<String, String>, T> convertir, Destino<T> destino) throws IOException {
+        ResultadoImportacion resultado = new ResultadoImportacion(maxErrores);
+        List<Fila<T>> pendientes = new ArrayList<>();
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(contenido, StandardCharsets.UTF_8))) {
+            leerFilas(lector, formato, convertir, destino, resultado, pendientes);
+        } catch (BoundedInputStream.LimiteSuperadoException e) {
+            throw interrumpir(e.getMessage(), pendientes, destino, resultado);
+        }
+        if (!pendientes.isEmpty()) {
+            guardarLote(pendientes, destino, resultado);
+        }
+        log.info("importacion formato={} importadas={} fallidas={}", formato, resultado.getImportados(), resultado.getFallidos());
+        return resultado;
+    }
+
+    // Cada lote completo se guarda y se vacia; las filas leidas despues del ultimo quedan en 'pendientes'
+    private <T> void leerFilas(BufferedReader lector, FormatoImportacion formato, Function<Map<String, String>, T> convertir,
+                               Destino<T> destino, ResultadoImportacion resultado, List<Fila<T>> pendientes) throws IOException {
+        List<String> cabecera = null;
+        long numero = 0;
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            numero++;
+            if (numero == 1 && linea.startsWith("\uFEFF")) {
+                linea = linea.substring(1);
+            }
+            if (linea.isBlank()) {
+                continue;
+            }
+            if (formato == FormatoImportacion.CSV && cabecera == null) {
+                cabecera = CsvParser.parse(linea);
+                continue;
+            }
+            String referencia = String.valueOf(numero);
+            try {
+                Map<String, String> campos = formato == FormatoImportacion.CSV
+                    ? campos(cabecera, CsvParser.parse(linea))
+                    : campos(objectMapper.readTree(linea));
+                pendientes.add(new Fila<>(referencia, convertir.apply(campos)));
+            } catch (JsonProcessingException e) {
+                resultado.fallo(referencia, "JSON no valido: " + e.getOriginalMessage());
+                continue;
+            } catch (RuntimeException e) {
+                resultado.fallo(referencia, mensaje(e));
+                continue;
+            }
+            if (pendientes.size() >= lote) {
+                guardarLote(new ArrayList<>(pendientes), destino, resultado);
+                pendientes.clear();
+            }
+        }
+    }
+
+    // Los conflictos previsibles (dni repetido, medico inexistente) se descartan antes de insertar. Si aun
+    // asi falla el lote (p. ej. otra importacion simultanea con los mismos dni), se repite fila a fila
+    // para guardar las correctas y anotar solo las que fallan
+    private <T> void guardarLote(List<Fila<T>> filas, Destino<T> destino, ResultadoImportacion resultado) {
+        List<ResultadoImportacion.Error> rechazos = new ArrayList<>();
+        try {
+            resultado.importado(transactionTemplate.execute(status -> destino.guardar(filas, rechazos)));
+            rechazos.forEach(rechazo -> resultado.fallo(rechazo.fila(), rechazo.error()));
+        } catch (RuntimeException e) {
+            if (filas.size() == 1) {
+                resultado.fallo(filas.get(0).referencia(), mensaje(e));
+                descartar(filas.get(0), destino);
+                return;
+            }
+            log.warn("lote de importacion fallido filas={}, se repite fila a fila", filas.size(), e);
+            for (Fila<T> fila : filas) {
+                guardarLote(List.of(fila), destino, resultado);
+            }
+        }
+    }
+
+    private static Map<String, String> campos(List<String> cabecera, List<String> valores) {
+        if (valores.size() != cabecera.size()) {
+            throw new IllegalArgumentException("Se esperaban " + cabecera.size() + " campos y hay " + valores.size());
+        }
+        Map<String, String> campos = new HashMap<>();
+        for (int i = 0; i < cabecera.size(); i++) {
+            if (!valores.get(i).isEmpty()) {
+                campos.put(cabecera.get(i), valores.get(i));
+            }
+        }
+        return campos;
+    }
+
+    // Los objetos anidados se aplanan con el nombre del campo como prefijo: "medico": {"dni": ...} -> medicoDni
+    private static Map<String, String> campos(JsonNode objeto) {
+        if (!objeto.isObject()) {
+            throw new IllegalArgumentException("Cada linea debe ser un objeto JSON");
+        }
+        Map<String, String> campos = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = objeto.fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> campo = it.next();
+            if (campo.getValue().isObject()) {
+                campo.getValue().fields().forEachRemaining(anidado -> {
+                    if (anidado.getValue().isValueNode() && !anidado.getValue().isNull()) {
+                        String nombre = anidado.getKey();
+                        campos.put(campo.getKey() + Character.toUpperCase(nombre.charAt(0)) + nombre.substring(1), anidado.getValue().asText());
+                    }
+                });
+            } else if (campo.getValue().isValueNode() && !campo.getValue().isNull()) {
+                campos.put(campo.getKey(), campo.getValue().asText());
+            }
+        }
+        return campos;
+    }
+
+    private static String obligatorio(Map<String, String> campos, String nombre) {
+        String valor = campos.get(nombre);
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Falta el campo " + nombre);
+        }
+        return valor;
+    }
+
+    private static long numero(String nombre, String valor) {
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nombre + " no es un numero: " + valor);
+        }
+    }
+
+    private static String mensaje(Exception e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return "La fila viola una restriccion de la base de datos (dni repetido o referencia inexistente)";
+        }
+        return e.getMessage();
+    }
+
+    private record Fila<T>(String referencia, T valor) {
+    }
+
+    private record PacienteImportado(Paciente paciente, String medicoDni, Long medicoId) {
+    }
+
+    // Guardado de un lote dentro de su transaccion
+    private interface Destino<T> {
+
+        // Descarta las filas que chocarian con los datos ya guardados, anotando el motivo en 'rechazos',
+        // guarda el resto y devuelve cuantas ha guardado
+        int guardar(List<Fila<T>> filas, List<ResultadoImportacion.Error> rechazos);
+
+        // Fila que finalmente no se ha guardado: deshace lo que se hizo al leerla fuera de la transaccion
+        default void descartada(Fila<T> fila) {
+        }
+    }
+}
@@ -7,16 +7,23 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 
 @Entity
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Informe {
 
+    public enum EstadoPrediccion { PENDIENTE, COMPLETADA, ERROR }
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private long id;
@@ -27,8 +34,17 @@ public class Informe {
     @Column(name = "contenido", columnDefinition = "TEXT")
     private String contenido;
 
+    // La prediccion se calcula en segundo plano (PrediccionWorker) despues de guardar el informe
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_prediccion", length = 16)
+    private EstadoPrediccion estadoPrediccion;
+
+    // Instante (ms) del ultimo cambio, para reindexar al arrancar lo que el indice no llego a confirmar
+    @Column(name = "modificado", nullable = false)
+    private long modificado;
+
     // Relación con imagen (muchas imágenes pueden pertenecer a un informe)
-    @ManyToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "imagen_id")
     private Imagen imagen;
@@ -57,6 +73,32 @@ public class Informe {
         this.prediccion = prediccion;
     }
 
+    public EstadoPrediccion getEstadoPrediccion() {
+        return estadoPrediccion(estadoPrediccion, prediccion);
+    }
+
+    static EstadoPrediccion estadoPrediccion(EstadoPrediccion estado, String prediccion) {
+        // Informes anteriores a la cola: se predecian antes de guardarse
+        if (estado == null && prediccion != null) {
+            return EstadoPrediccion.COMPLETADA;
+        }
+        return estado;
+    }
+
+    public void setEstadoPrediccion(EstadoPrediccion estadoPrediccion) {
+        this.estadoPrediccion = estadoPrediccion;
+    }
+
+    public long getModificado() {
+        return modificado;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void modificar() {
+        this.modificado = System.currentTimeMillis();
+    }
+
     public String getContenido() {
         return contenido;
     }
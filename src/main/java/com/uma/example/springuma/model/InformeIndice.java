@@ -0,0 +1,399 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiBits;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+
+// Indice invertido (Lucene) del texto de los informes y del resultado de su prediccion. La base de datos
+// sigue siendo la fuente de verdad: el indice guarda lo necesario para buscar, puntuar y resaltar, y los
+// informes encontrados se leen despues por id. Los cambios se ven en las busquedas en menos de un segundo
+// (near real time) y se confirman en disco cada busqueda.commit-ms; cada confirmacion guarda hasta que
+// instante estan incluidos los cambios de los informes, y al arrancar se reindexan los posteriores.
+@Component
+public class InformeIndice {
+
+    private static final Logger log = LoggerFactory.getLogger(InformeIndice.class);
+
+    static final String ID = "id";
+    static final String CONTENIDO = "contenido";
+    static final String ETIQUETA = "etiqueta";
+    static final String ESTADO = "estado";
+
+    // Dato de cada confirmacion: los informes modificados antes de este instante (ms) ya estan en el indice
+    static final String REINDEXAR_DESDE = "reindexar-desde";
+
+    // "Cancer (label 1), score: ..." / "Not cancer (label 0),  score: ..." (ImagenService.getNewPrediccion)
+    private static final Pattern ETIQUETA_PREDICCION = Pattern.compile("\\(label (\\d+)\\)");
+
+    // Posiciones y offsets en el indice: el resaltado no tiene que volver a analizar el texto
+    private static final FieldType TIPO_CONTENIDO = new FieldType(TextField.TYPE_STORED);
+    static {
+        TIPO_CONTENIDO.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TIPO_CONTENIDO.freeze();
+    }
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    private final Directory directorio;
+    private final Analyzer analizador;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ControlledRealTimeReopenThread<IndexSearcher> reapertura;
+    private final int maxResultados;
+    private final int lote;
+    private final long margen;
+
+    // Marca de la ultima confirmacion hasta que termina la reconciliacion del arranque: las confirmaciones
+    // no pasan de ella, para que una parada a medias vuelva a reconciliar lo mismo
+    private volatile long reconciliandoDesde;
+
+    public record Acierto(long id, float puntuacion, String resaltado) {
+    }
+
+    public record Resultado(long total, boolean totalExacto, List<Acierto> aciertos) {
+    }
+
+    public InformeIndice(@Value("${busqueda.directorio:}") String directorio,
+                         @Value("${busqueda.max-resultados:10000}") int maxResultados,
+                         @Value("${busqueda.reindexacion.lote:1000}") int lote,
+                         @Value("${busqueda.reindexacion.margen-ms:300000}") long margen) throws IOException {
+        // Sin directorio (tests) el indice vive en memoria
+        this.directorio = directorio.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(directorio));
+        // Minusculas y sin acentos: "calcificación" encuentra "calcificacion"
+        this.analizador = CustomAnalyzer.builder()
+                .withTokenizer("standard")
+                .addTokenFilter("lowercase")
+                .addTokenFilter("asciiFolding")
+                .build();
+        this.writer = new IndexWriter(this.directorio, new IndexWriterConfig(analizador)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+        this.reapertura = new ControlledRealTimeReopenThread<>(writer, searcherManager, 1.0, 0.025);
+        this.reapertura.setName("indice-informes");
+        this.reapertura.setDaemon(true);
+        this.reapertura.start();
+        this.maxResultados = maxResultados;
+        this.lote = lote;
+        this.margen = margen;
+        this.reconciliandoDesde = marca();
+    }
+
+    // Los cambios del indice siguen a la transaccion: si se deshace, el indice no se toca
+    void indexarDespuesDelCommit(long id) {
+        despuesDelCommit(() -> indexar(id));
+    }
+
+    void eliminarDespuesDelCommit(long id) {
+        despuesDelCommit(() -> eliminar(id));
+    }
+
+    private static void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    // Relee el informe confirmado; si ya no existe, lo quita del indice
+    public void indexar(long id) {
+        repositoryInforme.findInfoById(id).ifPresentOrElse(this::indexar, () -> eliminar(id));
+    }
+
+    void indexar(InformeInfo informe) {
+        try {
+            writer.updateDocument(new Term(ID, Long.toString(informe.getId())), documento(informe));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void eliminar(long id) {
+        try {
+            writer.deleteDocuments(new Term(ID, Long.toString(id)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Document documento(InformeInfo informe) {
+        Document documento = new Document();
+        documento.add(new StringField(ID, Long.toString(informe.getId()), Field.Store.YES));
+        if (informe.getContenido() != null) {
+            documento.add(new Field(CONTENIDO, informe.getContenido(), TIPO_CONTENIDO));
+        }
+        String etiqueta = etiqueta(informe.getPrediccion());
+        if (etiqueta != null) {
+            documento.add(new StringField(ETIQUETA, etiqueta, Field.Store.NO));
+        }
+        if (informe.getEstadoPrediccion() != null) {
+            documento.add(new StringField(ESTADO, informe.getEstadoPrediccion().name(), Field.Store.NO));
+        }
+        return documento;
+    }
+
+    static String etiqueta(String prediccion) {
+        if (prediccion == null) {
+            return null;
+        }
+        Matcher m = ETIQUETA_PREDICCION.matcher(prediccion);
+        return m.find() ? m.group(1) : null;
+    }
+
+    // texto admite la sintaxis simple de Lucene ("frase exacta", -excluir, prefijo*, a | b); por defecto todos
+    // los terminos son obligatorios. Sin texto, devuelve todos los informes que cumplan los filtros.
+    public Resultado buscar(String texto, String etiqueta, Informe.EstadoPrediccion estado, int desde, int tamano) {
+        int hasta = Math.min(desde + tamano, maxResultados);
+        if (desde >= hasta) {
+            return new Resultado(0, true, List.of());
+        }
+        Query consultaTexto = null;
+        if (texto != null && !texto.isBlank()) {
+            SimpleQueryParser parser = new SimpleQueryParser(analizador, CONTENIDO);
+            parser.setDefaultOperator(BooleanClause.Occur.MUST);
+            consultaTexto = parser.parse(texto);
+        }
+        BooleanQuery.Builder consulta = new BooleanQuery.Builder()
+                .add(consultaTexto != null ? consultaTexto : new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        if (etiqueta != null) {
+            consulta.add(new TermQuery(new Term(ETIQUETA, etiqueta)), BooleanClause.Occur.FILTER);
+        }
+        if (estado != null) {
+            consulta.add(new TermQuery(new Term(ESTADO, estado.name())), BooleanClause.Occur.FILTER);
+        }
+        Query query = consulta.build();
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs encontrados = searcher.search(query, hasta);
+            ScoreDoc[] pagina = encontrados.scoreDocs.length > desde
+                    ? Arrays.copyOfRange(encontrados.scoreDocs, desde, encontrados.scoreDocs.length)
+                    : new ScoreDoc[0];
+            String[] resaltados = new String[pagina.length];
+            if (consultaTexto != null && pagina.length > 0) {
+                UnifiedHighlighter resaltador = UnifiedHighlighter.builder(searcher, analizador)
+                        .withFormatter(new DefaultPassageFormatter("<em>", "</em>", " ... ", true))
+                        .build();
+                resaltados = resaltador.highlight(CONTENIDO, query, new TopDocs(encontrados.totalHits, pagina), 3);
+            }
+            List<Acierto> aciertos = new ArrayList<>(pagina.length);
+            for (int i = 0; i < pagina.length; i++) {
+                long id = Long.parseLong(searcher.storedFields().document(pagina[i].doc).get(ID));
+                aciertos.add(new Acierto(id, pagina[i].score, resaltados[i]));
+            }
+            TotalHits total = encontrados.totalHits;
+            return new Resultado(total.value, total.relation == TotalHits.Relation.EQUAL_TO, aciertos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException e) {
+                    log.warn("error al liberar el buscador del indice de informes", e);
+                }
+            }
+        }
+    }
+
+    // Lo confirmado en disco puede no incluir los ultimos cambios (parada brusca, directorio borrado o
+    // copiado de otro momento). Al arrancar, en segundo plano: se reindexan los informes modificados desde
+    // la marca de la ultima confirmacion (todos si no la hay) y, si el numero de documentos no coincide con
+    // el de informes, se comparan los ids para quitar los borrados y anadir los que falten
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconciliarAlArrancar() {
+        long desde = reconciliandoDesde;
+        Thread hilo = new Thread(() -> reconciliar(desde), "indice-informes-reconciliacion");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private long marca() {
+        for (Map.Entry<String, String> dato : writer.getLiveCommitData()) {
+            if (REINDEXAR_DESDE.equals(dato.getKey())) {
+                return Long.parseLong(dato.getValue());
+            }
+        }
+        return 0;
+    }
+
+    public void reconciliar(long desde) {
+        long inicio = System.currentTimeMillis();
+        try {
+            long reindexados = reindexarModificados(desde);
+            long informes = repositoryInforme.count();
+            long documentos = documentos();
+            long[] diferencias = {0, 0};
+            if (documentos != informes) {
+                diferencias = comparar();
+            }
+            reconciliandoDesde = Long.MAX_VALUE;
+            confirmar();
+            log.info("indice de informes reconciliado desde={} reindexados={} informes={} documentos={} anadidos={} eliminados={} ms={}",
+                    desde, reindexados, informes, documentos, diferencias[0], diferencias[1], System.currentTimeMillis() - inicio);
+        } catch (RuntimeException | IOException e) {
+            log.warn("error al reconciliar el indice de informes; se repetira en el proximo arranque", e);
+        }
+    }
+
+    private long reindexarModificados(long desde) {
+        long after = 0;
+        long total = 0;
+        List<InformeInfo> informes;
+        do {
+            informes = repositoryInforme.findInfoModificadosAfter(desde, after, Limit.of(lote));
+            for (InformeInfo informe : informes) {
+                indexar(informe);
+                after = informe.getId();
+            }
+            total += informes.size();
+        } while (informes.size() == lote);
+        return total;
+    }
+
+    // Devuelve {anadidos, eliminados}
+    private long[] comparar() throws IOException {
+        Set<Long> indexados = idsIndexados();
+        long anadidos = 0;
+        long after = 0;
+        List<Long> ids;
+        do {
+            ids = repositoryInforme.findIdsAfter(after, Limit.of(lote));
+            for (Long id : ids) {
+                if (!indexados.remove(id)) {
+                    indexar(id);
+                    anadidos++;
+                }
+                after = id;
+            }
+        } while (ids.size() == lote);
+        for (Long id : indexados) {
+            eliminar(id);
+        }
+        return new long[] {anadidos, indexados.size()};
+    }
+
+    private Set<Long> idsIndexados() throws IOException {
+        searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            IndexReader reader = searcher.getIndexReader();
+            Bits vivos = MultiBits.getLiveDocs(reader);
+            StoredFields campos = reader.storedFields();
+            Set<Long> ids = new HashSet<>(reader.numDocs());
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (vivos == null || vivos.get(doc)) {
+                    ids.add(Long.parseLong(campos.document(doc, Set.of(ID)).get(ID)));
+                }
+            }
+            return ids;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private long documentos() throws IOException {
+        searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    // Los cambios de un informe llegan al indice al confirmarse su transaccion: lo modificado hace mas de
+    // busqueda.reindexacion.margen-ms ya esta indexado, salvo transacciones mas largas que el margen
+    @Scheduled(fixedDelayString = "${busqueda.commit-ms:5000}")
+    public synchronized void confirmar() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                long desde = Math.min(System.currentTimeMillis() - margen, reconciliandoDesde);
+                writer.setLiveCommitData(Map.of(REINDEXAR_DESDE, Long.toString(desde)).entrySet());
+                writer.commit();
+            }
+        } catch (IOException e) {
+            log.warn("error al confirmar el indice de informes", e);
+        }
+    }
+
+    // Desde el lector near real time: el writer no cuenta los borrados pendientes hasta confirmarlos
+    public long getDocumentos() {
+        try {
+            return documentos();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        reapertura.close();
+        confirmar();
+        searcherManager.close();
+        writer.close();
+        directorio.close();
+        analizador.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+// Informe con los datos de su imagen, paciente y medico cargados en una sola consulta
+public class InformeInfo {
+
+    private long id;
+    private String prediccion;
+    private String contenido;
+    private Informe.EstadoPrediccion estadoPrediccion;
+    private ImagenInfo imagen;
+
+    public InformeInfo(long id, String prediccion, String contenido, Informe.EstadoPrediccion estadoPrediccion,
+                       long imagenId, String imagenNombre, Calendar imagenFecha, Paciente paciente) {
+        this.id = id;
+        this.prediccion = prediccion;
+        this.contenido = contenido;
+        this.estadoPrediccion = Informe.estadoPrediccion(estadoPrediccion, prediccion);
+        this.imagen = new ImagenInfo(imagenId, imagenNombre, imagenFecha, paciente);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getPrediccion() {
+        return prediccion;
+    }
+
+    public String getContenido() {
+        return contenido;
+    }
+
+    public Informe.EstadoPrediccion getEstadoPrediccion() {
+        return estadoPrediccion;
+    }
+
+    public ImagenInfo getImagen() {
+        return imagen;
+    }
+
+    @Override
+    public String toString() {
+        return "InformeInfo{" +
+                "id=" + id +
+                ", prediccion='" + prediccion + '\'' +
+                ", imagen=" + imagen +
+                '}';
+    }
+}
@@ -1,14 +1,16 @@
 package com.uma.example.springuma.model;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-
-import com.uma.example.springuma.utils.ImageUtils;
-
-import java.util.Map;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Service
@@ -18,7 +20,13 @@ public class InformeService {
     private RepositoryInforme repositoryInforme;
 
     @Autowired
-    private RepositoryImagen repositoryImage;
+    private ImagenService imagenService;
+
+    @Autowired
+    private RepositoryPrediccionTarea repositoryPrediccionTarea;
+
+    @Autowired
+    private InformeIndice informeIndice;
 
     public List<Informe> getAllInformes() {
         return repositoryInforme.findAll();
@@ -28,61 +36,120 @@ public class InformeService {
         return repositoryInforme.findById(id).orElse(null);
     }
 
-    
-    public Informe addInforme(Informe informe) throws IOException, Exception {
-        String neew_pred = getNewPrediccion(informe);
-        //double neew_pred = Math.random();
-        System.out.println(neew_pred);
-        informe.setPrediccion(((neew_pred)));
+    public InformeInfo getInformeInfo(Long id) {
+        return repositoryInforme.findInfoById(id).orElse(null);
+    }
 
-        return repositoryInforme.saveAndFlush(informe);
+    public Validador getValidadorInforme(Long id) {
+        return repositoryInforme.findValidadorById(id);
+    }
+
+    
+    // El informe se guarda sin esperar al modelo; la prediccion la rellena PrediccionWorker
+    @Transactional
+    public Informe addInforme(Informe informe) {
+        informe.setPrediccion(null);
+        informe.setEstadoPrediccion(Informe.EstadoPrediccion.PENDIENTE);
+        Informe guardado = repositoryInforme.saveAndFlush(informe);
+        repositoryPrediccionTarea.save(new PrediccionTarea(guardado));
+        informeIndice.indexarDespuesDelCommit(guardado.getId());
+        return guardado;
     }
     
 
     
-    public void updateInforme(Informe informe) throws IOException, Exception {
-        // Puedes implementar la lógica de actualización según tus necesidades
-        // Aquí se muestra un ejemplo básico:
+    @Transactional
+    public void updateInforme(Informe informe) {
+        // La imagen del informe no cambia, asi que la prediccion solo se vuelve a pedir si fallo
         Informe existingInforme = repositoryInforme.findById(informe.getId()).orElse(null);
         if (existingInforme != null) {
-            existingInforme.setPrediccion(getNewPrediccion(existingInforme));
             existingInforme.setContenido(informe.getContenido());
+            if (existingInforme.getEstadoPrediccion() == Informe.EstadoPrediccion.ERROR) {
+                existingInforme.setEstadoPrediccion(Informe.EstadoPrediccion.PENDIENTE);
+                reencolar(existingInforme);
+            }
             repositoryInforme.save(existingInforme);
+            informeIndice.indexarDespuesDelCommit(existingInforme.getId());
         }
     }
     
 
+    // La tarea FALLIDA del informe vuelve a la cola con los intentos a cero; si hubiera varias
+    // (reintentos anteriores a este cambio), sobran las demas
+    private void reencolar(Informe informe) {
+        List<PrediccionTarea> tareas = repositoryPrediccionTarea.findByInformeId(informe.getId());
+        if (tareas.isEmpty()) {
+            repositoryPrediccionTarea.save(new PrediccionTarea(informe));
+            return;
+        }
+        PrediccionTarea tarea = tareas.get(0);
+        long ahora = System.currentTimeMillis();
+        tarea.setEstado(PrediccionTarea.Estado.PENDIENTE);
+        tarea.setIntentos(0);
+        tarea.setProximoIntento(ahora);
+        tarea.setActualizada(ahora);
+        tarea.setUltimoError(null);
+        repositoryPrediccionTarea.deleteAll(tareas.subList(1, tareas.size()));
+    }
+
+    @Transactional
     public void removeInforme(Informe informe) {
         repositoryInforme.delete(informe);
+        informeIndice.eliminarDespuesDelCommit(informe.getId());
     }
 
+    @Transactional
     public void removeInformeByID(Long id) {
         repositoryInforme.deleteById(id);
+        informeIndice.eliminarDespuesDelCommit(id);
     }
 
     public List<Informe> getInformesImagen(Long id) {
         return repositoryInforme.findByImagenId(id);
     }
 
-    
-    public String getNewPrediccion(Informe informe) throws IOException, Exception{
-        Map<String, Double> response =  ImagenAPIPredictor
-        .query(ImageUtils.decompressImage(repositoryImage.getReferenceById(informe.getImagen().getId())
-        .getFile_content()));
-        //informe.setPrediccion((String)response.get("0"));
-        System.out.println("resp");
-        System.out.println( response);
-        double score_0 = response.get("LABEL_0");
-        double score_1 = response.get("LABEL_1");
-        System.out.println("resp");
-        System.out.println( response);
-        String resulString;
-        if (score_0 > score_1){
-            resulString = "Not cancer (label 0),  score: " + score_0;
-        }else{
-            resulString = "Cancer (label 1), score: " + score_1;
+    public List<InformeInfo> getInformesImagen(Long id, Pageable pageable) {
+        return repositoryInforme.findInfoByImagenId(id, pageable);
+    }
+
+    public List<InformeInfo> getInformesImagen(Long id, long after, int size) {
+        return repositoryInforme.findInfoByImagenIdAfter(id, after, Limit.of(size));
+    }
+
+    public Validador getValidadorInformesImagen(Long id) {
+        return repositoryInforme.findValidadorByImagenId(id);
+    }
+
+    // Busqueda de texto en el indice; los informes se leen de la base de datos en una sola consulta.
+    // Los borrados en cascada los quita del indice ImagenService; si aun asi aparece un informe que ya
+    // no existe (p. ej. borrado sin pasar por los servicios), se descarta y se quita del indice.
+    public BusquedaInformes buscar(String texto, String etiqueta, Informe.EstadoPrediccion estado, Pageable pageable) {
+        InformeIndice.Resultado resultado = informeIndice.buscar(texto, etiqueta, estado,
+                (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize());
+        if (resultado.aciertos().isEmpty()) {
+            return new BusquedaInformes(resultado.total(), resultado.totalExacto(), List.of());
+        }
+        Map<Long, InformeInfo> informes = new HashMap<>();
+        for (InformeInfo informe : repositoryInforme.findInfoByIdIn(
+                resultado.aciertos().stream().map(InformeIndice.Acierto::id).toList())) {
+            informes.put(informe.getId(), informe);
+        }
+        List<BusquedaInformes.Encontrado> encontrados = new ArrayList<>(resultado.aciertos().size());
+        for (InformeIndice.Acierto acierto : resultado.aciertos()) {
+            InformeInfo informe = informes.get(acierto.id());
+            if (informe != null) {
+                encontrados.add(new BusquedaInformes.Encontrado(informe, acierto.puntuacion(), acierto.resaltado()));
+            } else {
+                informeIndice.eliminar(acierto.id());
+            }
         }
-        return resulString;
+        return new BusquedaInformes(resultado.total(), resultado.totalExacto(), encontrados);
+    }
+
+    
+    // La prediccion la resuelve ImagenService de forma asincrona sobre el pool del predictor
+    public CompletableFuture<String> getNewPrediccion(Informe informe) {
+        return imagenService.getNewPrediccion(informe.getImagen().getId());
     }
     
 }
@@ -2,6 +2,12 @@ package com.uma.example.springuma.model;
 
 import java.io.Serializable;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.Column;
@@ -9,12 +15,18 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // para ignorar el serializador al devolver un objeto cuenta
 public class Medico implements Serializable{
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "medico_seq")
+    @SequenceGenerator(name = "medico_seq", sequenceName = "medico_seq", allocationSize = 50)
     private long id;
 
     public long getId() {
@@ -25,6 +37,8 @@ public class Medico implements Serializable{
         this.id = id;
     }
     
+    // Clave natural: getMedicoByDni se resuelve desde la cache de ids naturales
+    @NaturalId(mutable = true)
     @Column(unique=true) 
     private String dni; 
     
@@ -58,6 +72,21 @@ public class Medico implements Serializable{
         this.especialidad = especialidad;
     }
 
+    // Instante (ms) del ultimo cambio: validador del ETag de las respuestas con este medico
+    @JsonIgnore
+    @Column(name = "modificado", nullable = false)
+    private long modificado;
+
+    public long getModificado() {
+        return modificado;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void modificar() {
+        this.modificado = System.currentTimeMillis();
+    }
+
     public Medico(){
         
     }
@@ -2,14 +2,28 @@ package com.uma.example.springuma.model;
 
 import java.util.List;
 
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 @Service
 public class MedicoService {
     @Autowired
     RepositoryMedico repositoryMedico;
 
+    @Autowired
+    CacheSegundoNivel cacheSegundoNivel;
+
+    @Autowired
+    ImagenService imagenService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public List<Medico> getAllMedicos(){
         return repositoryMedico.findAll();
     }
@@ -24,17 +38,29 @@ public class MedicoService {
 
     public void updateMedico(Medico m){
         repositoryMedico.save(m);
+        cacheSegundoNivel.evictMedico(m.getId());
     }
 
+    // Las imagenes de sus pacientes se borran antes que el medico para liberar su contenido en el almacen
+    @Transactional
     public void removeMedico(Medico m){
+        imagenService.removeImagenesMedico(m.getId());
         repositoryMedico.delete(m);
+        cacheSegundoNivel.evictMedico(m.getId());
+        cacheSegundoNivel.evictPacientesDeMedico();
     }
 
+    @Transactional
     public void removeMedicoID(Long id){
+        imagenService.removeImagenesMedico(id);
         repositoryMedico.deleteById(id);
+        cacheSegundoNivel.evictMedico(id);
+        cacheSegundoNivel.evictPacientesDeMedico();
     }
 
+    // Busqueda por id natural: se resuelve desde la cache de segundo nivel sin consultar la base de datos
+    @Transactional(readOnly = true)
     public Medico getMedicoByDni(String dni) {
-        return repositoryMedico.getMedicoByDni(dni);
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Medico.class).load(dni);
     }
 }
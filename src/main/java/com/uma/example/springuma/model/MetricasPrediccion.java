@@ -0,0 +1,54 @@
+package com.uma.example.springuma.model;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.uma.example.springuma.utils.CircuitBreaker;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Publica en Micrometer el estado del circuit breaker y del bulkhead del predictor y los aciertos de la cache de predicciones
+@Component
+public class MetricasPrediccion implements MeterBinder {
+
+    @Autowired
+    private PrediccionCircuitBreaker breaker;
+
+    @Autowired
+    private PrediccionBulkhead bulkhead;
+
+    @Autowired
+    private PrediccionCache prediccionCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // Un gauge por estado (1 el actual, 0 el resto): se puede filtrar por estado en Prometheus
+        for (CircuitBreaker.Estado estado : CircuitBreaker.Estado.values()) {
+            Gauge.builder("prediccion.breaker.estado", breaker, b -> b.getEstado() == estado ? 1 : 0)
+                .tag("estado", estado.name().toLowerCase())
+                .register(registry);
+        }
+        Gauge.builder("prediccion.breaker.fallos.seguidos", breaker, PrediccionCircuitBreaker::getFallosSeguidos)
+            .register(registry);
+        FunctionCounter.builder("prediccion.breaker.aperturas", breaker, PrediccionCircuitBreaker::getAperturas)
+            .register(registry);
+        FunctionCounter.builder("prediccion.breaker.rechazadas", breaker, PrediccionCircuitBreaker::getRechazadas)
+            .register(registry);
+        Gauge.builder("prediccion.bulkhead.en.curso", bulkhead, PrediccionBulkhead::getEnCurso)
+            .register(registry);
+
+        // Mismos nombres que las caches instrumentadas por Micrometer (cache.gets, cache.size)
+        FunctionCounter.builder("cache.gets", prediccionCache, PrediccionCache::getHits)
+            .tag("cache", "predicciones").tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", prediccionCache, PrediccionCache::getMisses)
+            .tag("cache", "predicciones").tag("result", "miss")
+            .register(registry);
+        Gauge.builder("cache.size", prediccionCache, PrediccionCache::size)
+            .tag("cache", "predicciones")
+            .register(registry);
+    }
+}
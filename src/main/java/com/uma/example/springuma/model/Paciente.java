@@ -2,19 +2,27 @@ package com.uma.example.springuma.model;
 
 import java.io.Serializable;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.*;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // para ignorar el serializador al devolver un objeto cuenta
 public class Paciente implements Serializable{
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "paciente_seq")
+    @SequenceGenerator(name = "paciente_seq", sequenceName = "paciente_seq", allocationSize = 50)
     private long id;
 
     @Column(name = "nombre")
@@ -26,13 +34,19 @@ public class Paciente implements Serializable{
     @Column(name = "cita")
     private String cita; // Esto podría ser un tipo de fecha si es necesario
 
+    @NaturalId(mutable = true)
     @Column(name = "dni", unique = true)
     private String dni;
 
-    @ManyToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     private Medico medico;
 
+    // Instante (ms) del ultimo cambio: validador del ETag de las respuestas con este paciente
+    @JsonIgnore
+    @Column(name = "modificado", nullable = false)
+    private long modificado;
+
     // Constructor vacío
     public Paciente() {
     }
@@ -95,6 +109,16 @@ public class Paciente implements Serializable{
         this.medico = medico;
     }
 
+    public long getModificado() {
+        return modificado;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void modificar() {
+        this.modificado = System.currentTimeMillis();
+    }
+
     @Override
     public boolean equals(Object obj) {
     return (obj instanceof Paciente) && ((Paciente) obj).getDni().equals(this.dni);
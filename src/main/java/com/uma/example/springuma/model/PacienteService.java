@@ -3,7 +3,10 @@ package com.uma.example.springuma.model;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class PacienteService {
@@ -11,6 +14,12 @@ public class PacienteService {
     @Autowired
     RepositoryPaciente repositoryPaciente; // Cambio el nombre y tipo del repositorio
 
+    @Autowired
+    CacheSegundoNivel cacheSegundoNivel;
+
+    @Autowired
+    ImagenService imagenService;
+
     public List<Paciente> getAllPacientes(){
         return repositoryPaciente.findAll(); // Cambio el método para devolver una lista de Pacientes
     }
@@ -32,17 +41,37 @@ public class PacienteService {
         paciente.setDni(p.getDni());
         paciente.setMedico(p.getMedico());*/
         repositoryPaciente.save(p); // Guardamos el paciente actualizado
+        cacheSegundoNivel.evictPaciente(p.getId());
     }
 
+    // Las imagenes se borran antes que el paciente para liberar su contenido en el almacen
+    @Transactional
     public void removePaciente(Paciente p){
+        imagenService.removeImagenesPaciente(p.getId());
         repositoryPaciente.delete(p); // Cambio a eliminar un Paciente
+        cacheSegundoNivel.evictPaciente(p.getId());
     }
 
+    @Transactional
     public void removePacienteID(Long id){
+        imagenService.removeImagenesPaciente(id);
         repositoryPaciente.deleteById(id); // Cambio a eliminar un Paciente por ID
+        cacheSegundoNivel.evictPaciente(id);
     }
 
     public List<Paciente> getPacientesMedico(Long id) {
         return repositoryPaciente.findByMedicoId(id);
     }
+
+    public List<Paciente> getPacientesMedico(Long id, Pageable pageable) {
+        return repositoryPaciente.findByMedicoId(id, pageable);
+    }
+
+    public List<Paciente> getPacientesMedico(Long id, long after, int size) {
+        return repositoryPaciente.findByMedicoIdAndIdGreaterThanOrderByIdAsc(id, after, Limit.of(size));
+    }
+
+    public Validador getValidadorPacientesMedico(Long id) {
+        return repositoryPaciente.findValidadorByMedicoId(id);
+    }
 }
@@ -0,0 +1,79 @@
+package com.uma.example.springuma.model;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+// Bulkhead compartido por los clientes del servicio de prediccion remoto (bloqueante y reactivo):
+// entre los dos nunca hay mas de predictor.concurrencia.max llamadas en vuelo
+@Component
+public class PrediccionBulkhead {
+
+    // Cada cuanto vuelve a mirar el cliente reactivo si hay un turno libre, sin bloquear su hilo
+    private static final Duration SONDEO = Duration.ofMillis(20);
+
+    private final Semaphore turnos;
+    private final int max;
+    private final long espera;
+
+    public PrediccionBulkhead(@Value("${predictor.concurrencia.max:${predictor.pool.max-per-route:10}}") int max,
+                              @Value("${predictor.concurrencia.espera-ms:30000}") long espera) {
+        this.turnos = new Semaphore(max, true);
+        this.max = max;
+        this.espera = espera;
+    }
+
+    // Bloquea hasta conseguir un turno, como mucho predictor.concurrencia.espera-ms o maxEspera si es menor
+    public void entrar(long maxEspera) throws InterruptedException, PredictorNoDisponibleException {
+        if (!turnos.tryAcquire(Math.min(espera, maxEspera), TimeUnit.MILLISECONDS)) {
+            throw sinTurno();
+        }
+    }
+
+    public void salir() {
+        turnos.release();
+    }
+
+    // Ejecuta la llamada reactiva con un turno, que se devuelve al terminar, fallar o cancelarse
+    public <T> Mono<T> limitar(Mono<T> llamada) {
+        return Mono.usingWhen(turno(), t -> llamada,
+                t -> liberar(), (t, e) -> liberar(), t -> liberar());
+    }
+
+    private Mono<Boolean> turno() {
+        return Mono.defer(() -> {
+            long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(espera);
+            return Mono.defer(() -> {
+                if (turnos.tryAcquire()) {
+                    return Mono.just(true);
+                }
+                return Mono.<Boolean>error(System.nanoTime() - limite >= 0 ? sinTurno() : new Ocupado());
+            }).retryWhen(Retry.fixedDelay(Long.MAX_VALUE, SONDEO).filter(Ocupado.class::isInstance));
+        });
+    }
+
+    private Mono<Void> liberar() {
+        return Mono.fromRunnable(turnos::release);
+    }
+
+    private static PredictorNoDisponibleException sinTurno() {
+        return new PredictorNoDisponibleException("Demasiadas predicciones en curso, intentelo mas tarde");
+    }
+
+    public int getEnCurso() {
+        return max - turnos.availablePermits();
+    }
+
+    // Senal interna para volver a intentarlo: no sale de esta clase
+    private static final class Ocupado extends RuntimeException {
+        Ocupado() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.uma.example.springuma.model;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.uma.example.springuma.utils.LruCache;
+
+// Resultados del modelo indexados por el hash del contenido de la imagen:
+// la misma imagen siempre produce la misma prediccion, asi que no hace falta volver a llamar a la API
+@Component
+public class PrediccionCache {
+
+    private final LruCache<String, Map<String, Double>> cache;
+
+    public PrediccionCache(@Value("${prediccion.cache.max-entries:10000}") int maxEntries,
+                           @Value("${prediccion.cache.ttl-ms:86400000}") long ttl) {
+        this.cache = new LruCache<>(maxEntries, ttl);
+    }
+
+    public Map<String, Double> get(String hash) {
+        return hash == null ? null : cache.get(hash);
+    }
+
+    public void put(String hash, Map<String, Double> prediccion) {
+        if (hash != null) {
+            cache.put(hash, prediccion);
+        }
+    }
+
+    public void remove(String hash) {
+        cache.remove(hash);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+}
@@ -0,0 +1,50 @@
+package com.uma.example.springuma.model;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.uma.example.springuma.utils.CircuitBreaker;
+
+// Circuito compartido por los clientes del servicio de prediccion remoto (bloqueante y reactivo):
+// mientras el servicio este caido, las predicciones fallan al instante en lugar de esperar timeouts
+@Component
+public class PrediccionCircuitBreaker {
+
+    private final CircuitBreaker breaker;
+
+    public PrediccionCircuitBreaker(@Value("${predictor.breaker.fallos:5}") int maxFallos,
+                                    @Value("${predictor.breaker.espera-ms:30000}") long espera) {
+        this.breaker = new CircuitBreaker(maxFallos, espera);
+    }
+
+    public void permitir() throws CircuitoAbiertoException {
+        if (!breaker.permitir()) {
+            throw new CircuitoAbiertoException("El servicio de prediccion no esta disponible, intentelo mas tarde",
+                    breaker.getProximaPrueba());
+        }
+    }
+
+    public void exito() {
+        breaker.exito();
+    }
+
+    public void fallo() {
+        breaker.fallo();
+    }
+
+    public CircuitBreaker.Estado getEstado() {
+        return breaker.getEstado();
+    }
+
+    public int getFallosSeguidos() {
+        return breaker.getFallosSeguidos();
+    }
+
+    public long getRechazadas() {
+        return breaker.getRechazadas();
+    }
+
+    public long getAperturas() {
+        return breaker.getAperturas();
+    }
+}
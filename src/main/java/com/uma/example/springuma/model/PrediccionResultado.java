@@ -0,0 +1,27 @@
+package com.uma.example.springuma.model;
+
+// Resultado de la prediccion de una imagen dentro de una prediccion por lotes
+public class PrediccionResultado {
+
+    private long imagenId;
+    private String prediccion;
+    private String error;
+
+    public PrediccionResultado(long imagenId, String prediccion, String error) {
+        this.imagenId = imagenId;
+        this.prediccion = prediccion;
+        this.error = error;
+    }
+
+    public long getImagenId() {
+        return imagenId;
+    }
+
+    public String getPrediccion() {
+        return prediccion;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,116 @@
+package com.uma.example.springuma.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+
+// Prediccion pendiente de un informe. La cola vive en la base de datos para que las tareas
+// sobrevivan a un reinicio; PrediccionWorker las procesa y borra la tarea al terminar.
+@Entity
+public class PrediccionTarea {
+
+    public enum Estado { PENDIENTE, EN_CURSO, FALLIDA }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "informe_id")
+    private Informe informe;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", length = 16)
+    private Estado estado;
+
+    @Column(name = "intentos")
+    private int intentos;
+
+    // Instante (ms) a partir del cual se puede volver a intentar
+    @Column(name = "proximo_intento")
+    private long proximoIntento;
+
+    // Instante (ms) del ultimo cambio de estado, para recuperar tareas EN_CURSO abandonadas
+    @Column(name = "actualizada")
+    private long actualizada;
+
+    @Column(name = "ultimo_error", length = 1000)
+    private String ultimoError;
+
+    public PrediccionTarea() {
+    }
+
+    public PrediccionTarea(Informe informe) {
+        this.informe = informe;
+        this.estado = Estado.PENDIENTE;
+        this.proximoIntento = System.currentTimeMillis();
+        this.actualizada = this.proximoIntento;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public Informe getInforme() {
+        return informe;
+    }
+
+    public void setInforme(Informe informe) {
+        this.informe = informe;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public void setEstado(Estado estado) {
+        this.estado = estado;
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+
+    public void setIntentos(int intentos) {
+        this.intentos = intentos;
+    }
+
+    public long getProximoIntento() {
+        return proximoIntento;
+    }
+
+    public void setProximoIntento(long proximoIntento) {
+        this.proximoIntento = proximoIntento;
+    }
+
+    public long getActualizada() {
+        return actualizada;
+    }
+
+    public void setActualizada(long actualizada) {
+        this.actualizada = actualizada;
+    }
+
+    public String getUltimoError() {
+        return ultimoError;
+    }
+
+    public void setUltimoError(String ultimoError) {
+        this.ultimoError = ultimoError;
+    }
+}
@@ -0,0 +1,140 @@
+package com.uma.example.springuma.model;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Procesa la cola de predicciones de informes: reclama tareas pendientes, pide la prediccion
+// y la guarda en el informe. Los fallos se reintentan con backoff exponencial y jitter.
+@Component
+public class PrediccionWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(PrediccionWorker.class);
+
+    @Autowired
+    private RepositoryPrediccionTarea repositoryPrediccionTarea;
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private InformeIndice informeIndice;
+
+    @Value("${prediccion.cola.concurrencia:4}")
+    private int concurrencia;
+
+    @Value("${prediccion.cola.max-intentos:5}")
+    private int maxIntentos;
+
+    @Value("${prediccion.cola.backoff-inicial-ms:2000}")
+    private long backoffInicial;
+
+    @Value("${prediccion.cola.backoff-max-ms:300000}")
+    private long backoffMax;
+
+    @Value("${prediccion.cola.timeout-en-curso-ms:600000}")
+    private long timeoutEnCurso;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    @Scheduled(fixedDelayString = "${prediccion.cola.intervalo-ms:1000}")
+    public void procesar() {
+        long ahora = System.currentTimeMillis();
+        repositoryPrediccionTarea.liberarAbandonadas(ahora - timeoutEnCurso);
+        int libres = concurrencia - enCurso.get();
+        if (libres <= 0) {
+            return;
+        }
+        List<PrediccionTarea> tareas = repositoryPrediccionTarea
+            .findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntento(PrediccionTarea.Estado.PENDIENTE, ahora, Limit.of(libres));
+        for (PrediccionTarea tarea : tareas) {
+            if (repositoryPrediccionTarea.reclamar(tarea.getId(), ahora) == 1) {
+                enCurso.incrementAndGet();
+                ejecutar(tarea);
+            }
+        }
+    }
+
+    private void ejecutar(PrediccionTarea tarea) {
+        Informe informe = tarea.getInforme();
+        try {
+            imagenService.getNewPrediccion(informe.getImagen().getId())
+                .whenComplete((prediccion, e) -> terminar(tarea, prediccion, e));
+        } catch (Exception e) {
+            terminar(tarea, null, e);
+        }
+    }
+
+    private void terminar(PrediccionTarea tarea, String prediccion, Throwable error) {
+        try {
+            if (error == null) {
+                repositoryInforme.updatePrediccion(tarea.getInforme().getId(), prediccion, Informe.EstadoPrediccion.COMPLETADA,
+                        System.currentTimeMillis());
+                repositoryPrediccionTarea.deleteById(tarea.getId());
+                informeIndice.indexar(tarea.getInforme().getId());
+            } else if (causa(error) instanceof CircuitoAbiertoException abierto) {
+                aplazar(tarea, abierto);
+            } else {
+                reintentar(tarea, error);
+            }
+        } finally {
+            enCurso.decrementAndGet();
+        }
+    }
+
+    private void reintentar(PrediccionTarea tarea, Throwable error) {
+        int intentos = tarea.getIntentos() + 1;
+        long ahora = System.currentTimeMillis();
+        tarea.setIntentos(intentos);
+        tarea.setActualizada(ahora);
+        tarea.setUltimoError(mensaje(error));
+        if (intentos >= maxIntentos) {
+            log.warn("prediccion fallida informe={} intentos={} error={}", tarea.getInforme().getId(), intentos, tarea.getUltimoError());
+            tarea.setEstado(PrediccionTarea.Estado.FALLIDA);
+            repositoryInforme.updatePrediccion(tarea.getInforme().getId(), null, Informe.EstadoPrediccion.ERROR, ahora);
+            informeIndice.indexar(tarea.getInforme().getId());
+        } else {
+            // backoff exponencial con jitter completo: evita que todos los reintentos coincidan
+            long espera = Math.min(backoffMax, backoffInicial << Math.min(intentos - 1, 20));
+            tarea.setEstado(PrediccionTarea.Estado.PENDIENTE);
+            tarea.setProximoIntento(ahora + ThreadLocalRandom.current().nextLong(espera / 2, espera + 1));
+            log.debug("prediccion reintentada informe={} intentos={} error={}", tarea.getInforme().getId(), intentos, tarea.getUltimoError());
+        }
+        repositoryPrediccionTarea.save(tarea);
+    }
+
+    // El circuito abierto rechaza la llamada sin llegar al servicio: la tarea espera a que deje pasar una
+    // prueba sin gastar un intento, con jitter para que las tareas aplazadas no lleguen todas a la vez
+    private void aplazar(PrediccionTarea tarea, CircuitoAbiertoException abierto) {
+        long ahora = System.currentTimeMillis();
+        tarea.setEstado(PrediccionTarea.Estado.PENDIENTE);
+        tarea.setActualizada(ahora);
+        tarea.setUltimoError(abierto.getMessage());
+        tarea.setProximoIntento(Math.max(ahora, abierto.getDisponibleEn()) + ThreadLocalRandom.current().nextLong(backoffInicial + 1));
+        log.debug("prediccion aplazada informe={} intentos={} hasta={}", tarea.getInforme().getId(), tarea.getIntentos(),
+                tarea.getProximoIntento());
+        repositoryPrediccionTarea.save(tarea);
+    }
+
+    private static Throwable causa(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static String mensaje(Throwable error) {
+        Throwable causa = error.getCause() != null ? error.getCause() : error;
+        String mensaje = String.valueOf(causa.getMessage());
+        return mensaje.length() > 1000 ? mensaje.substring(0, 1000) : mensaje;
+    }
+}
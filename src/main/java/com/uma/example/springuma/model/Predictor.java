@@ -0,0 +1,12 @@
+package com.uma.example.springuma.model;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Clasificador de imagenes. La implementacion se elige con predictor.tipo:
+// api (ImagenAPIPredictor, HuggingFace remoto) o local (ImagenLocalPredictor, modelo ONNX en disco).
+// Ambas devuelven las puntuaciones de LABEL_0 (no cancer) y LABEL_1 (cancer).
+public interface Predictor {
+
+    CompletableFuture<Map<String, Double>> query(byte[] file_data);
+}
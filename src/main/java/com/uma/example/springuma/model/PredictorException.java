@@ -0,0 +1,32 @@
+package com.uma.example.springuma.model;
+
+// Error al obtener una prediccion del modelo
+public class PredictorException extends Exception {
+
+    // Codigo HTTP con el que respondio el servicio de prediccion; 0 si el error no viene de una respuesta
+    private final int estado;
+
+    public PredictorException(String message) {
+        this(message, 0);
+    }
+
+    public PredictorException(String message, int estado) {
+        super(message);
+        this.estado = estado;
+    }
+
+    public PredictorException(String message, Throwable cause) {
+        super(message, cause);
+        this.estado = 0;
+    }
+
+    public int getEstado() {
+        return estado;
+    }
+
+    // 4xx distinto de 429: la peticion no es valida (imagen demasiado grande, token incorrecto...), el servicio
+    // esta funcionando y el circuit breaker no lo cuenta ni como exito ni como fallo
+    public boolean isErrorDelCliente() {
+        return estado >= 400 && estado < 500 && estado != 429;
+    }
+}
@@ -0,0 +1,10 @@
+package com.uma.example.springuma.model;
+
+// El servicio de prediccion no acepta llamadas ahora mismo (circuito abierto, limite de concurrencia
+// alcanzado o modelo todavia cargando): la peticion puede repetirse mas tarde
+public class PredictorNoDisponibleException extends PredictorException {
+
+    public PredictorNoDisponibleException(String message) {
+        super(message);
+    }
+}
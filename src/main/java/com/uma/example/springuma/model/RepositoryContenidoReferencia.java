@@ -0,0 +1,28 @@
+package com.uma.example.springuma.model;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+// Los contadores se modifican con updates atomicos en la base de datos: la fila queda bloqueada hasta
+// el final de la transaccion, lo que ordena las subidas y los borrados de un mismo contenido
+public interface RepositoryContenidoReferencia extends JpaRepository<ContenidoReferencia, String> {
+
+    @Modifying
+    @Query("update ContenidoReferencia r set r.referencias = r.referencias + 1 where r.clave = :clave")
+    int incrementar(@Param("clave") String clave);
+
+    @Modifying
+    @Query("update ContenidoReferencia r set r.referencias = r.referencias - 1 where r.clave = :clave and r.referencias > 0")
+    int decrementar(@Param("clave") String clave);
+
+    @Modifying
+    @Query("delete from ContenidoReferencia r where r.clave = :clave and r.referencias <= 0")
+    int deleteSinReferencias(@Param("clave") String clave);
+
+    @Query("select r.referencias from ContenidoReferencia r where r.clave = :clave")
+    Optional<Long> findReferenciasByClave(@Param("clave") String clave);
+}
@@ -2,13 +2,47 @@ package com.uma.example.springuma.model;
 
 
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface RepositoryImagen extends JpaRepository<Imagen, Long> {
 
     List<Imagen> getByPacienteId(Long id);
 
+    // Imagenes de todos los pacientes de un medico
+    List<Imagen> getByPacienteMedicoId(Long medicoId);
+
+    @Transactional
+    @Modifying
+    @Query("update Imagen i set i.hash = :hash where i.id = :id")
+    int updateHash(@Param("id") long id, @Param("hash") String hash);
+
+    // Las imagenes subidas antes de guardar su tipo siempre se han servido como PNG
+    @Query("select new com.uma.example.springuma.model.ContenidoImagen(i.id, i.hash, coalesce(i.tipoContenido, 'image/png')) "
+            + "from Imagen i where i.id = :id")
+    Optional<ContenidoImagen> findContenidoById(@Param("id") long id);
+
+    // Proyecciones sin la columna file_content para los listados y la informacion de una imagen;
+    // el medico del paciente se trae en la misma consulta
+    @Query("select new com.uma.example.springuma.model.ImagenInfo(i.id, i.nombre, i.fecha, p) "
+            + "from Imagen i left join i.paciente p left join fetch p.medico where p.id = :id")
+    List<ImagenInfo> findInfoByPacienteId(@Param("id") Long id, Pageable pageable);
+
+    @Query("select new com.uma.example.springuma.model.ImagenInfo(i.id, i.nombre, i.fecha, p) "
+            + "from Imagen i left join i.paciente p left join fetch p.medico where p.id = :id and i.id > :after order by i.id")
+    List<ImagenInfo> findInfoByPacienteIdAfter(@Param("id") Long id, @Param("after") long after, Limit limit);
+
+    @Query("select new com.uma.example.springuma.model.ImagenInfo(i.id, i.nombre, i.fecha, p) "
+            + "from Imagen i left join i.paciente p left join fetch p.medico where i.id = :id")
+    Optional<ImagenInfo> findInfoById(@Param("id") Long id);
+
 
     // Aquí puedes añadir métodos personalizados si es necesario.
     // Por ejemplo, si quieres buscar imágenes por una propiedad específica:
@@ -0,0 +1,13 @@
+package com.uma.example.springuma.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface RepositoryImagenVariante extends JpaRepository<ImagenVariante, String> {
+
+    @Modifying
+    @Query("delete from ImagenVariante v where v.hash = :hash")
+    int deleteByHash(@Param("hash") String hash);
+}
@@ -1,13 +1,85 @@
 package com.uma.example.springuma.model;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface RepositoryInforme extends JpaRepository<Informe, Long>{
 
     List<Informe> findByImagenId(Long id);
 
+    // Proyecciones para las respuestas: imagen, paciente y medico en la misma consulta y sin file_content
+    @Query("select new com.uma.example.springuma.model.InformeInfo(inf.id, inf.prediccion, inf.contenido, inf.estadoPrediccion, "
+            + "i.id, i.nombre, i.fecha, p) "
+            + "from Informe inf join inf.imagen i left join i.paciente p left join fetch p.medico where i.id = :id")
+    List<InformeInfo> findInfoByImagenId(@Param("id") Long id, Pageable pageable);
+
+    @Query("select new com.uma.example.springuma.model.InformeInfo(inf.id, inf.prediccion, inf.contenido, inf.estadoPrediccion, "
+            + "i.id, i.nombre, i.fecha, p) "
+            + "from Informe inf join inf.imagen i left join i.paciente p left join fetch p.medico "
+            + "where i.id = :id and inf.id > :after order by inf.id")
+    List<InformeInfo> findInfoByImagenIdAfter(@Param("id") Long id, @Param("after") long after, Limit limit);
+
+    @Query("select new com.uma.example.springuma.model.InformeInfo(inf.id, inf.prediccion, inf.contenido, inf.estadoPrediccion, "
+            + "i.id, i.nombre, i.fecha, p) "
+            + "from Informe inf join inf.imagen i left join i.paciente p left join fetch p.medico where inf.id = :id")
+    Optional<InformeInfo> findInfoById(@Param("id") Long id);
+
+    // Validadores de las proyecciones anteriores: cambian tambien con el paciente y el medico de la imagen
+    @Query("select new com.uma.example.springuma.model.Validador(count(inf), coalesce(max(inf.id), 0), "
+            + "coalesce(max(greatest(inf.modificado, coalesce(p.modificado, 0), coalesce(m.modificado, 0))), 0)) "
+            + "from Informe inf join inf.imagen i left join i.paciente p left join p.medico m where i.id = :id")
+    Validador findValidadorByImagenId(@Param("id") Long id);
+
+    @Query("select new com.uma.example.springuma.model.Validador(count(inf), coalesce(max(inf.id), 0), "
+            + "coalesce(max(greatest(inf.modificado, coalesce(p.modificado, 0), coalesce(m.modificado, 0))), 0)) "
+            + "from Informe inf join inf.imagen i left join i.paciente p left join p.medico m where inf.id = :id")
+    Validador findValidadorById(@Param("id") Long id);
+
+    // Informes encontrados por la busqueda de texto (InformeIndice), en cualquier orden
+    @Query("select new com.uma.example.springuma.model.InformeInfo(inf.id, inf.prediccion, inf.contenido, inf.estadoPrediccion, "
+            + "i.id, i.nombre, i.fecha, p) "
+            + "from Informe inf join inf.imagen i left join i.paciente p left join fetch p.medico where inf.id in :ids")
+    List<InformeInfo> findInfoByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Recorridos por keyset para reconciliar el indice al arrancar: informes cambiados desde un instante (ms)
+    // y todos los ids
+    @Query("select new com.uma.example.springuma.model.InformeInfo(inf.id, inf.prediccion, inf.contenido, inf.estadoPrediccion, "
+            + "i.id, i.nombre, i.fecha, p) "
+            + "from Informe inf join inf.imagen i left join i.paciente p left join fetch p.medico "
+            + "where inf.id > :after and inf.modificado >= :desde order by inf.id")
+    List<InformeInfo> findInfoModificadosAfter(@Param("desde") long desde, @Param("after") long after, Limit limit);
+
+    @Query("select inf.id from Informe inf where inf.id > :after order by inf.id")
+    List<Long> findIdsAfter(@Param("after") long after, Limit limit);
+
+    // Informes que la base de datos borra en cascada con su imagen, con las imagenes de un paciente o con las
+    // de los pacientes de un medico
+    @Query("select inf.id from Informe inf where inf.imagen.id = :id")
+    List<Long> findIdsByImagenId(@Param("id") long id);
+
+    @Query("select inf.id from Informe inf where inf.imagen.paciente.id = :id")
+    List<Long> findIdsByPacienteId(@Param("id") long id);
+
+    @Query("select inf.id from Informe inf where inf.imagen.paciente.medico.id = :id")
+    List<Long> findIdsByMedicoId(@Param("id") long id);
+
+    // No pasa por @PreUpdate: modificado lo indica quien actualiza
+    @Transactional
+    @Modifying
+    @Query("update Informe i set i.prediccion = :prediccion, i.estadoPrediccion = :estado, i.modificado = :modificado "
+            + "where i.id = :id")
+    int updatePrediccion(@Param("id") long id, @Param("prediccion") String prediccion,
+                         @Param("estado") Informe.EstadoPrediccion estado, @Param("modificado") long modificado);
+
     // https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.query-methods.query-creation
 	// Además de los metodos de consulta basicos, especifico un metodo que busque una cuenta por el CCC
 	// A través del nombre del metodo, spring sabe que tiene que hacer una consulta y devolver la cuenta con el ccc especificado
@@ -1,9 +1,20 @@
 package com.uma.example.springuma.model;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface RepositoryMedico extends JpaRepository<Medico, Long>{
 
     Medico getMedicoByDni(String dni);
 
+    List<Medico> findByDniIn(Collection<String> dnis);
+
+    @Query("select m.dni from Medico m where m.dni in :dnis")
+    Set<String> findDniExistentes(@Param("dnis") Collection<String> dnis);
+
 }
\ No newline at end of file
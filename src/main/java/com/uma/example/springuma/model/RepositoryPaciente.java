@@ -1,13 +1,42 @@
 package com.uma.example.springuma.model;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryPaciente extends JpaRepository<Paciente, Long> {
 
     Paciente findByDni(String dni);
 
+    @Query("select p.dni from Paciente p where p.dni in :dnis")
+    Set<String> findDniExistentes(@Param("dnis") Collection<String> dnis);
+
     List<Paciente> findByMedicoId(Long id);
 
+    // Paginacion por desplazamiento (page/size/sort) y por cursor (id del ultimo elemento recibido)
+    // Cache de consultas: Hibernate la invalida en cuanto cambia la tabla paciente
+    @EntityGraph(attributePaths = "medico")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Paciente> findByMedicoId(Long id, Pageable pageable);
+
+    @EntityGraph(attributePaths = "medico")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Paciente> findByMedicoIdAndIdGreaterThanOrderByIdAsc(Long id, long after, Limit limit);
+
+    // Los pacientes de la respuesta incluyen a su medico: tambien cuenta su ultimo cambio
+    @Query("select new com.uma.example.springuma.model.Validador(count(p), coalesce(max(p.id), 0), "
+            + "coalesce(max(greatest(p.modificado, m.modificado)), 0)) from Paciente p join p.medico m where m.id = :id")
+    Validador findValidadorByMedicoId(@Param("id") Long id);
+
 }
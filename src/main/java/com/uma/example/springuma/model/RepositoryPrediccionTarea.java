@@ -0,0 +1,35 @@
+package com.uma.example.springuma.model;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RepositoryPrediccionTarea extends JpaRepository<PrediccionTarea, Long> {
+
+    // El worker usa el informe fuera de la transaccion de la consulta
+    @EntityGraph(attributePaths = "informe")
+    List<PrediccionTarea> findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntento(
+        PrediccionTarea.Estado estado, long ahora, Limit limit);
+
+    List<PrediccionTarea> findByInformeId(long informeId);
+
+    // Reclama la tarea solo si sigue pendiente: si hay varios nodos, solo uno la procesa
+    @Transactional
+    @Modifying
+    @Query("update PrediccionTarea t set t.estado = 'EN_CURSO', t.actualizada = :ahora "
+            + "where t.id = :id and t.estado = 'PENDIENTE'")
+    int reclamar(@Param("id") long id, @Param("ahora") long ahora);
+
+    // Tareas EN_CURSO de un nodo que se detuvo antes de terminarlas
+    @Transactional
+    @Modifying
+    @Query("update PrediccionTarea t set t.estado = 'PENDIENTE' "
+            + "where t.estado = 'EN_CURSO' and t.actualizada < :limite")
+    int liberarAbandonadas(@Param("limite") long limite);
+}
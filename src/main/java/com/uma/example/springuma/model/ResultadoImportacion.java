@@ -0,0 +1,45 @@
+package com.uma.example.springuma.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resumen de una importacion masiva: filas guardadas y filas rechazadas con su motivo.
+// Solo se devuelven los primeros 'maxErrores' errores; 'fallidos' los cuenta todos
+public class ResultadoImportacion {
+
+    // 'fila': numero de linea del fichero o nombre de la entrada del archivo de imagenes
+    public record Error(String fila, String error) {
+    }
+
+    private final int maxErrores;
+    private long importados;
+    private long fallidos;
+    private final List<Error> errores = new ArrayList<>();
+
+    public ResultadoImportacion(int maxErrores) {
+        this.maxErrores = maxErrores;
+    }
+
+    void importado(int filas) {
+        importados += filas;
+    }
+
+    void fallo(String fila, String error) {
+        fallidos++;
+        if (errores.size() < maxErrores) {
+            errores.add(new Error(fila, error));
+        }
+    }
+
+    public long getImportados() {
+        return importados;
+    }
+
+    public long getFallidos() {
+        return fallidos;
+    }
+
+    public List<Error> getErrores() {
+        return errores;
+    }
+}
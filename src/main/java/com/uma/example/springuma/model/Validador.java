@@ -0,0 +1,6 @@
+package com.uma.example.springuma.model;
+
+// Validador de una respuesta que se consulta sin cargarla: cuantos elementos tiene, el ultimo id y el
+// instante (ms) del ultimo cambio de sus entidades. Cambia en cuanto se crea, modifica o borra un elemento.
+public record Validador(long elementos, long ultimoId, long modificado) {
+}
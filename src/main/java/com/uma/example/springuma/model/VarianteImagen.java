@@ -0,0 +1,28 @@
+package com.uma.example.springuma.model;
+
+// Versiones de una imagen que se pueden descargar (GET /imagen/{id}?size=...). Las reducidas se
+// generan una vez en JPEG y se guardan en el mismo ImageStore que el original, con su hash
+public enum VarianteImagen {
+
+    ORIGINAL,
+    // Galerias de imagenes de un paciente
+    THUMBNAIL,
+    // Visor, antes de descargar el original a resolucion completa
+    PREVIEW;
+
+    public static final String TIPO_CONTENIDO = "image/jpeg";
+
+    public String getNombre() {
+        return name().toLowerCase();
+    }
+
+    // null si el nombre no corresponde a ninguna variante
+    public static VarianteImagen of(String nombre) {
+        for (VarianteImagen variante : values()) {
+            if (variante.getNombre().equalsIgnoreCase(nombre)) {
+                return variante;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.uma.example.springuma.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Deja leer como mucho 'limite' bytes: al intentar leer uno mas lanza LimiteSuperadoException, asi que
+// quien lee nunca procesa un contenido truncado como si estuviera completo
+public class BoundedInputStream extends FilterInputStream {
+
+    public static class LimiteSuperadoException extends IOException {
+
+        public LimiteSuperadoException(String message) {
+            super(message);
+        }
+    }
+
+    private final long limite;
+    private final String mensaje;
+    private long leidos;
+
+    public BoundedInputStream(InputStream in, long limite, String mensaje) {
+        super(in);
+        this.limite = limite;
+        this.mensaje = mensaje;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            leidos++;
+            comprobar();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        // Un byte mas de lo que queda: si llega, el contenido supera el limite
+        int n = super.read(b, off, (int) Math.min(len, limite - leidos + 1));
+        if (n > 0) {
+            leidos += n;
+            comprobar();
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long saltados = super.skip(Math.min(n, limite - leidos + 1));
+        leidos += saltados;
+        comprobar();
+        return saltados;
+    }
+
+    private void comprobar() throws LimiteSuperadoException {
+        if (leidos > limite) {
+            throw new LimiteSuperadoException(mensaje);
+        }
+    }
+
+    public long getLeidos() {
+        return leidos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,85 @@
+package com.uma.example.springuma.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Corta las llamadas a un servicio que esta fallando: tras 'maxFallos' fallos seguidos se abre y rechaza
+// todo durante 'esperaMillis'; despues deja pasar una sola llamada de prueba (semiabierto) que decide
+// si vuelve a cerrarse o a abrirse
+public class CircuitBreaker {
+
+    public enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final int maxFallos;
+    private final long esperaMillis;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long desde;
+
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong aperturas = new AtomicLong();
+
+    public CircuitBreaker(int maxFallos, long esperaMillis) {
+        this.maxFallos = maxFallos;
+        this.esperaMillis = esperaMillis;
+    }
+
+    public synchronized boolean permitir() {
+        long ahora = System.currentTimeMillis();
+        switch (estado) {
+            case CERRADO:
+                return true;
+            case ABIERTO:
+                if (ahora - desde >= esperaMillis) {
+                    estado = Estado.SEMIABIERTO;
+                    desde = ahora;
+                    return true;
+                }
+                break;
+            case SEMIABIERTO:
+                // Si la llamada de prueba no ha informado del resultado (p. ej. se cancelo), se permite otra
+                if (ahora - desde >= esperaMillis) {
+                    desde = ahora;
+                    return true;
+                }
+                break;
+        }
+        rechazadas.incrementAndGet();
+        return false;
+    }
+
+    public synchronized void exito() {
+        estado = Estado.CERRADO;
+        fallosSeguidos = 0;
+    }
+
+    public synchronized void fallo() {
+        fallosSeguidos++;
+        if (estado == Estado.SEMIABIERTO || (estado == Estado.CERRADO && fallosSeguidos >= maxFallos)) {
+            estado = Estado.ABIERTO;
+            desde = System.currentTimeMillis();
+            aperturas.incrementAndGet();
+        }
+    }
+
+    // Instante (ms) a partir del cual permitir() deja pasar una llamada; en CERRADO, ya
+    public synchronized long getProximaPrueba() {
+        return estado == Estado.CERRADO ? System.currentTimeMillis() : desde + esperaMillis;
+    }
+
+    public synchronized Estado getEstado() {
+        return estado;
+    }
+
+    public synchronized int getFallosSeguidos() {
+        return fallosSeguidos;
+    }
+
+    public long getRechazadas() {
+        return rechazadas.get();
+    }
+
+    public long getAperturas() {
+        return aperturas.get();
+    }
+}
@@ -0,0 +1,40 @@
+package com.uma.example.springuma.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Campos de una linea CSV separada por comas (RFC 4180): los campos entre comillas pueden contener
+// comas y comillas dobladas (""), pero no saltos de linea
+public class CsvParser {
+
+    public static List<String> parse(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString().trim());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        campos.add(campo.toString().trim());
+        return campos;
+    }
+}
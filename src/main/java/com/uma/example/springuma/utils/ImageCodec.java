@@ -0,0 +1,39 @@
+package com.uma.example.springuma.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Forma en la que se guarda el contenido de una imagen. Se registra junto al contenido
+// para que cada fila se pueda decodificar aunque cambie la configuracion.
+public enum ImageCodec {
+
+    // Se guarda tal cual se subio
+    NONE {
+        @Override
+        public void encode(InputStream in, OutputStream out, int level) throws IOException {
+            in.transferTo(out);
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    },
+
+    DEFLATE {
+        @Override
+        public void encode(InputStream in, OutputStream out, int level) throws IOException {
+            ImageUtils.compressImage(in, out, level);
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return ImageUtils.decompressImage(in);
+        }
+    };
+
+    public abstract void encode(InputStream in, OutputStream out, int level) throws IOException;
+
+    public abstract InputStream decode(InputStream in);
+}
@@ -1,41 +1,102 @@
 package com.uma.example.springuma.utils;
 
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 public class ImageUtils {
 
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // Deflater/Inflater reservan memoria nativa al crearse: se reutilizan en lugar de crear uno por llamada
+    private static final int POOL_SIZE = 32;
+    private static final Map<Integer, BlockingQueue<Deflater>> DEFLATERS = new ConcurrentHashMap<>();
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    // Metricas de compresion: es una clase estatica, asi que se registran en el registro global
+    // de Micrometer, al que Spring Boot añade el de Prometheus
+    private static final Medida COMPRIMIR = new Medida("compress", "bytes");
+    private static final Medida COMPRIMIR_STREAM = new Medida("compress", "stream");
+    private static final Medida DESCOMPRIMIR = new Medida("decompress", "bytes");
+    private static final Medida DESCOMPRIMIR_STREAM = new Medida("decompress", "stream");
 
     public static byte[] compressImage(byte[] data) {
-        Deflater deflater = new Deflater();
-        deflater.setLevel(Deflater.BEST_COMPRESSION);
-        deflater.setInput(data);
-        deflater.finish();
+        return compressImage(data, Deflater.BEST_COMPRESSION);
+    }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] tmp = new byte[4*1024];
-        while (!deflater.finished()) {
-            int size = deflater.deflate(tmp);
-            outputStream.write(tmp, 0, size);
-        }
+    public static byte[] compressImage(byte[] data, int level) {
+        long inicio = System.nanoTime();
+        Deflater deflater = borrowDeflater(level);
         try {
-            outputStream.close();
-        } catch (Exception ignored) {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+            byte[] tmp = new byte[4*1024];
+            while (!deflater.finished()) {
+                int size = deflater.deflate(tmp);
+                outputStream.write(tmp, 0, size);
+            }
+            byte[] comprimido = outputStream.toByteArray();
+            COMPRIMIR.registrar(inicio, data.length, comprimido.length);
+            return comprimido;
+        } finally {
+            releaseDeflater(level, deflater);
         }
-        return outputStream.toByteArray();
     }
 
 
 
     public static byte[] decompressImage(byte[] data) {
-        Inflater inflater = new Inflater();
+        long inicio = System.nanoTime();
+        Inflater inflater = borrowInflater();
+        try {
+            byte[] descomprimido = inflate(inflater, data);
+            DESCOMPRIMIR.registrar(inicio, data.length, descomprimido.length);
+            return descomprimido;
+        } finally {
+            releaseInflater(inflater);
+        }
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] data) {
         inflater.setInput(data);
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
         byte[] tmp = new byte[4*1024];
         try {
             while (!inflater.finished()) {
                 int count = inflater.inflate(tmp);
+                if (count == 0 && inflater.needsInput()) {
+                    break;
+                }
                 outputStream.write(tmp, 0, count);
             }
             outputStream.close();
@@ -44,4 +105,208 @@ public class ImageUtils {
         return outputStream.toByteArray();
     }
 
+    // Version en streaming: solo se usan buffers de tamaño fijo, nunca la imagen completa en memoria
+    public static void compressImage(InputStream in, OutputStream out) throws IOException {
+        compressImage(in, out, Deflater.BEST_COMPRESSION);
+    }
+
+    public static void compressImage(InputStream in, OutputStream out, int level) throws IOException {
+        long inicio = System.nanoTime();
+        Deflater deflater = borrowDeflater(level);
+        try {
+            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            in.transferTo(deflaterStream);
+            deflaterStream.finish();
+            deflaterStream.flush();
+            COMPRIMIR_STREAM.registrar(inicio, deflater.getBytesRead(), deflater.getBytesWritten());
+        } finally {
+            releaseDeflater(level, deflater);
+        }
+    }
+
+    // El tiempo medido va de la apertura al cierre del stream: incluye lo que tarde el consumidor en leerlo
+    public static InputStream decompressImage(InputStream in) {
+        long inicio = System.nanoTime();
+        Inflater inflater = borrowInflater();
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                DESCOMPRIMIR_STREAM.registrar(inicio, inflater.getBytesRead(), inflater.getBytesWritten());
+                try {
+                    super.close();
+                } finally {
+                    releaseInflater(inflater);
+                }
+            }
+        };
+    }
+
+    // PNG, JPEG, GIF, WebP y JPEG 2000 ya van comprimidos: deflate apenas reduce su tamaño
+    public static boolean isCompressedFormat(byte[] header, int length) {
+        String tipo = contentType(header, length);
+        return tipo != null && !tipo.equals("image/tiff") && !tipo.equals("image/bmp");
+    }
+
+    // Tipo MIME de la imagen segun los primeros bytes del fichero, o null si no se reconoce
+    public static String contentType(byte[] header, int length) {
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        } else if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        } else if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        } else if (startsWith(header, length, 'R', 'I', 'F', 'F') && length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        } else if (startsWith(header, length, 0x00, 0x00, 0x00, 0x0C, 'j', 'P', ' ', ' ')
+                || startsWith(header, length, 0xFF, 0x4F, 0xFF, 0x51)) {
+            return "image/jp2";
+        } else if (startsWith(header, length, 'I', 'I', 0x2A, 0x00) || startsWith(header, length, 'M', 'M', 0x00, 0x2A)) {
+            return "image/tiff";
+        } else if (startsWith(header, length, 'B', 'M')) {
+            return "image/bmp";
+        }
+        return null;
+    }
+
+    // true si ImageIO tiene un lector para el tipo MIME (sin plugins no lee WebP ni JPEG 2000)
+    public static boolean isReadable(String contentType) {
+        return contentType != null && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+    }
+
+    public static BufferedImage readImage(byte[] data) throws IOException {
+        BufferedImage imagen = ImageIO.read(new ByteArrayInputStream(data));
+        if (imagen == null) {
+            throw new IOException("Formato de imagen no soportado");
+        }
+        return imagen;
+    }
+
+    // Reduce la imagen para que su lado mayor mida como mucho 'maxSide' pixeles. Se reduce a la mitad
+    // en pasos bilineales sucesivos: de una sola vez, una mamografia de miles de pixeles perderia
+    // detalle por aliasing. Las imagenes en escala de grises se mantienen en un solo canal
+    public static BufferedImage resizeImage(BufferedImage imagen, int maxSide) {
+        int tipo = imagen.getColorModel().getNumComponents() == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        double escala = Math.min(1.0, (double) maxSide / Math.max(imagen.getWidth(), imagen.getHeight()));
+        int anchoFinal = Math.max(1, (int) Math.round(imagen.getWidth() * escala));
+        int altoFinal = Math.max(1, (int) Math.round(imagen.getHeight() * escala));
+        BufferedImage actual = imagen;
+        do {
+            int ancho = Math.max(anchoFinal, actual.getWidth() / 2);
+            int alto = Math.max(altoFinal, actual.getHeight() / 2);
+            BufferedImage reducida = new BufferedImage(ancho, alto, tipo);
+            Graphics2D graficos = reducida.createGraphics();
+            try {
+                graficos.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graficos.drawImage(actual, 0, 0, ancho, alto, null);
+            } finally {
+                graficos.dispose();
+            }
+            actual = reducida;
+        } while (actual.getWidth() != anchoFinal || actual.getHeight() != altoFinal);
+        return actual;
+    }
+
+    public static byte[] writeJpeg(BufferedImage imagen, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream salida = new MemoryCacheImageOutputStream(out)) {
+            ImageWriteParam parametros = writer.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(quality);
+            writer.setOutput(salida);
+            writer.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Deflater borrowDeflater(int level) {
+        Deflater deflater = DEFLATERS.computeIfAbsent(level, l -> new ArrayBlockingQueue<>(POOL_SIZE)).poll();
+        return deflater != null ? deflater : new Deflater(level);
+    }
+
+    private static void releaseDeflater(int level, Deflater deflater) {
+        deflater.reset();
+        if (!DEFLATERS.get(level).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static Inflater borrowInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    public static MessageDigest newImageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Huella SHA-256 (en hexadecimal) del contenido original de la imagen
+    public static String hashImage(byte[] data) {
+        return toHex(newImageDigest().digest(data));
+    }
+
+    public static String toHex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static final class Medida {
+        private final Timer tiempo;
+        private final DistributionSummary entrada;
+        private final DistributionSummary salida;
+
+        Medida(String operacion, String modo) {
+            tiempo = Timer.builder("imagen.codec")
+                    .description("Tiempo de compresion/descompresion de imagenes")
+                    .tag("operacion", operacion).tag("modo", modo)
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry);
+            entrada = bytes(operacion, modo, "entrada");
+            salida = bytes(operacion, modo, "salida");
+        }
+
+        private static DistributionSummary bytes(String operacion, String modo, String sentido) {
+            return DistributionSummary.builder("imagen.codec.bytes")
+                    .baseUnit("bytes")
+                    .tag("operacion", operacion).tag("modo", modo).tag("sentido", sentido)
+                    .register(Metrics.globalRegistry);
+        }
+
+        void registrar(long inicio, long bytesEntrada, long bytesSalida) {
+            tiempo.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            entrada.record(bytesEntrada);
+            salida.record(bytesSalida);
+        }
+    }
 }
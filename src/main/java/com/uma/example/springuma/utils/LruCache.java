@@ -0,0 +1,77 @@
+package com.uma.example.springuma.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache en memoria acotada por tamaño (LRU) y con caducidad (TTL) de cada entrada
+public class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LruCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true: cada get mueve la entrada al final, la primera es la menos usada
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                return size() > LruCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entrada<V> entrada = entradas.get(key);
+        if (entrada == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (ttlMillis > 0 && System.currentTimeMillis() - entrada.creada > ttlMillis) {
+            entradas.remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entrada.valor;
+    }
+
+    public synchronized void put(K key, V value) {
+        entradas.put(key, new Entrada<>(value, System.currentTimeMillis()));
+    }
+
+    public synchronized void remove(K key) {
+        entradas.remove(key);
+    }
+
+    public synchronized void clear() {
+        entradas.clear();
+    }
+
+    public synchronized int size() {
+        return entradas.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Entrada<V> {
+        private final V valor;
+        private final long creada;
+
+        private Entrada(V valor, long creada) {
+            this.valor = valor;
+            this.creada = creada;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+-- Esquema que generaba Hibernate con ddl-auto=update antes de las migraciones: medicos, pacientes,
+-- imagenes con su contenido en la propia fila e informes. Las bases de datos creadas asi se marcan
+-- como version 1 al arrancar (spring.flyway.baseline-on-migrate), no lo ejecutan y reciben las
+-- migraciones siguientes, que añaden todo lo demas
+
+create sequence if not exists medico_seq start with 1 increment by 50;
+create sequence if not exists paciente_seq start with 1 increment by 50;
+create sequence if not exists imagen_seq start with 1 increment by 50;
+create sequence if not exists informe_seq start with 1 increment by 50;
+
+create table medico (
+    id bigint not null,
+    dni varchar(255) unique,
+    nombre varchar(255),
+    especialidad varchar(255),
+    primary key (id)
+);
+
+create table paciente (
+    id bigint not null,
+    nombre varchar(255),
+    edad integer,
+    cita varchar(255),
+    dni varchar(255) unique,
+    medico_id bigint,
+    primary key (id),
+    constraint fk_paciente_medico foreign key (medico_id) references medico on delete cascade
+);
+
+create table imagen (
+    id bigint not null,
+    nombre varchar(255),
+    fecha timestamp(6),
+    paciente_id bigint,
+    file_content blob,
+    primary key (id),
+    constraint fk_imagen_paciente foreign key (paciente_id) references paciente on delete cascade
+);
+
+create table informe (
+    id bigint not null,
+    prediccion varchar(255),
+    contenido varchar,
+    imagen_id bigint,
+    primary key (id),
+    constraint fk_informe_imagen foreign key (imagen_id) references imagen on delete cascade
+);
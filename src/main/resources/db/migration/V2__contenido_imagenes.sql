@@ -0,0 +1,14 @@
+-- Contenido de las imagenes fuera de su fila: hash del contenido (cache de predicciones, deduplicacion),
+-- almacen donde esta guardado y tipo MIME. Las imagenes anteriores se quedan sin hash ni almacen y se
+-- siguen leyendo de file_content
+alter table imagen add column hash varchar(64);
+alter table imagen add column almacen varchar(8);
+alter table imagen add column tipo_contenido varchar(100);
+
+-- Almacen en la base de datos (imagen.store.tipo=db): un contenido por hash, comprimido o no
+create table imagen_contenido (
+    hash varchar(64) not null,
+    contenido blob,
+    codec varchar(16) check (codec in ('NONE','DEFLATE')),
+    primary key (hash)
+);
@@ -0,0 +1,9 @@
+-- Miniaturas y vistas previas (GET /imagen/{id}?size=) en la base de datos, por variante y hash del original
+create table imagen_variante (
+    clave varchar(80) not null,
+    hash varchar(64) not null,
+    contenido blob,
+    primary key (clave)
+);
+
+create index idx_imagen_variante_hash on imagen_variante (hash);
@@ -0,0 +1,17 @@
+-- Cola de predicciones de los informes (PrediccionWorker). Los informes anteriores no tienen estado:
+-- ya se guardaban con su prediccion y cuentan como COMPLETADA
+create sequence if not exists prediccion_tarea_seq start with 1 increment by 50;
+
+alter table informe add column estado_prediccion varchar(16) check (estado_prediccion in ('PENDIENTE','COMPLETADA','ERROR'));
+
+create table prediccion_tarea (
+    id bigint not null,
+    informe_id bigint,
+    estado varchar(16) check (estado in ('PENDIENTE','EN_CURSO','FALLIDA')),
+    intentos integer,
+    proximo_intento bigint,
+    actualizada bigint,
+    ultimo_error varchar(1000),
+    primary key (id),
+    constraint fk_prediccion_tarea_informe foreign key (informe_id) references informe on delete cascade
+);
@@ -0,0 +1,19 @@
+-- Indices para los accesos frecuentes. Los de clave ajena incluyen el id para que los listados
+-- ordenados por id (paginas y cursores ?after=) se resuelvan recorriendo solo el indice.
+-- dni ya tiene el indice de su restriccion unique en medico y paciente.
+
+-- Imagenes de un paciente (getByPacienteId, listados de /imagen/paciente/{id})
+create index if not exists idx_imagen_paciente on imagen (paciente_id, id);
+
+-- Informes de una imagen (findByImagenId, listados de /informe/imagen/{id})
+create index if not exists idx_informe_imagen on informe (imagen_id, id);
+
+-- Pacientes de un medico (findByMedicoId, listados de /paciente/medico/{id})
+create index if not exists idx_paciente_medico on paciente (medico_id, id);
+
+-- Imagenes que comparten un mismo contenido (countByHashAndAlmacen al borrar)
+create index if not exists idx_imagen_hash on imagen (hash, almacen);
+
+-- Cola de predicciones: siguientes tareas pendientes y tareas de un informe
+create index if not exists idx_prediccion_tarea_estado on prediccion_tarea (estado, proximo_intento);
+create index if not exists idx_prediccion_tarea_informe on prediccion_tarea (informe_id, estado);
@@ -0,0 +1,17 @@
+-- Numero de imagenes que usan cada contenido (hash) de cada almacen. Se actualiza al subir y al borrar
+-- imagenes; el contenido se borra del almacen cuando llega a cero (ContenidoReferencias).
+create table contenido_referencia (
+    clave varchar(80) not null,
+    hash varchar(64) not null,
+    almacen varchar(8) not null,
+    referencias bigint not null,
+    primary key (clave)
+);
+
+-- Referencias de las imagenes ya guardadas. Las anteriores a los almacenes (file_content en la
+-- propia fila de la imagen) no tienen almacen y no comparten contenido.
+insert into contenido_referencia (clave, hash, almacen, referencias)
+select almacen || ':' || hash, hash, almacen, count(*)
+from imagen
+where hash is not null and almacen is not null
+group by hash, almacen;
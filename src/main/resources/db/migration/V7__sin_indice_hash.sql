@@ -0,0 +1,3 @@
+-- Las referencias a cada contenido se cuentan en contenido_referencia (V6): ya no se cuentan las
+-- imagenes con un mismo hash al borrar, y ninguna consulta filtra imagen por hash
+drop index if exists idx_imagen_hash;
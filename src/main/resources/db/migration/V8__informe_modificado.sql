@@ -0,0 +1,5 @@
+-- Instante (ms) del ultimo cambio de cada informe. Al arrancar, InformeIndice reindexa los informes
+-- cambiados despues de la ultima confirmacion del indice en disco, que no incluye los cambios de los
+-- ultimos segundos si la aplicacion se detuvo de golpe. Los informes existentes quedan a 0: un indice
+-- confirmado antes de este cambio no tiene esa marca y se reindexa entero.
+alter table informe add column modificado bigint default 0 not null;
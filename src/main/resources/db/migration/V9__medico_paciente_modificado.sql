@@ -0,0 +1,4 @@
+-- Instante (ms) del ultimo cambio de cada medico y paciente, como informe.modificado (V8): validador de
+-- los ETag de sus respuestas. Los existentes quedan a 0 hasta su primer cambio.
+alter table medico add column modificado bigint default 0 not null;
+alter table paciente add column modificado bigint default 0 not null;
@@ -0,0 +1,237 @@
+package com.uma.example.springuma.integration;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.InformeIndice;
+import com.uma.example.springuma.model.InformeService;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.MedicoService;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PacienteService;
+import com.uma.example.springuma.model.RepositoryImagen;
+import com.uma.example.springuma.model.RepositoryInforme;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.model.RepositoryPaciente;
+
+// Busqueda de texto en los informes: indexado al guardar, resaltado, filtros por etiqueta y estado,
+// limpieza de los informes borrados en cascada y reconciliacion del indice con la base de datos
+@TestPropertySource(properties = {"prediccion.cola.intervalo-ms=3600000", "imagen.variantes.al-subir=false"})
+public class BusquedaTest extends AbstractIntegration {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private InformeService informeService;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private PacienteService pacienteService;
+
+    @Autowired
+    private MedicoService medicoService;
+
+    @Autowired
+    private InformeIndice informeIndice;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    private Medico medico;
+
+    private Paciente paciente;
+
+    private Imagen imagen;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        medico = repositoryMedico.save(new Medico("11111111A", "Medico", "Radiologia"));
+        paciente = repositoryPaciente.save(new Paciente("Paciente", 40, "cita", "22222222B", medico));
+        byte[] png = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        imagenService.uploadImage(new MockMultipartFile("image", "healthy.png", "image/png", png), paciente);
+        imagen = repositoryImagen.findAll().get(0);
+    }
+
+    @Test
+    void buscaSinAcentosYResalta() throws Exception {
+        Informe agrupadas = informe("Se observan microcalcificaciones agrupadas en el cuadrante superior");
+        Informe benigna = informe("Calcificación benigna <b>sin</b> cambios");
+        informe("Mama densa sin hallazgos");
+        esperarTotal("calcificacion", 1);
+
+        buscar("calcificacion")
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$[0].informe.id").value(benigna.getId()))
+            .andExpect(jsonPath("$[0].resaltado").value("<em>Calcificación</em> benigna &lt;b&gt;sin&lt;&#x2F;b&gt; cambios"));
+        buscar("\"cuadrante superior\"")
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].informe.id").value(agrupadas.getId()))
+            .andExpect(jsonPath("$[0].resaltado", containsString("<em>cuadrante superior</em>")));
+        buscar("micro*")
+            .andExpect(jsonPath("$.length()").value(1));
+        buscar("sin -densa")
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].informe.id").value(benigna.getId()));
+    }
+
+    @Test
+    void filtraPorEtiquetaYEstado() throws Exception {
+        Informe cancer = informe("Masa irregular con microcalcificaciones");
+        Informe sano = informe("Microcalcificaciones benignas");
+        informe("Microcalcificaciones pendientes de revisar");
+        prediccion(cancer, "Cancer (label 1), score: 0.93");
+        prediccion(sano, "Not cancer (label 0),  score: 0.88");
+        esperarTotal("&estado=COMPLETADA", 2);
+
+        buscar("microcalcificaciones&etiqueta=1")
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].informe.id").value(cancer.getId()))
+            .andExpect(jsonPath("$[0].informe.estadoPrediccion").value("COMPLETADA"));
+        buscar("microcalcificaciones&etiqueta=0")
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].informe.id").value(sano.getId()));
+        buscar("microcalcificaciones&estado=PENDIENTE")
+            .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    // La base de datos borra los informes de una imagen en cascada: ImagenService los quita del indice
+    // al confirmar el borrado, sin esperar a que aparezcan en una busqueda
+    @Test
+    void borradoEnCascadaSeQuitaDelIndice() throws Exception {
+        informe("Microcalcificaciones agrupadas");
+        informe("Microcalcificaciones dispersas");
+        esperarTotal("microcalcificaciones", 2);
+
+        imagenService.removeImagenByID(imagen.getId());
+
+        assertEquals(0, informeIndice.getDocumentos());
+        esperarTotal("microcalcificaciones", 0);
+    }
+
+    @Test
+    void borradoDePacienteYMedicoSeQuitaDelIndice() throws Exception {
+        informe("Microcalcificaciones agrupadas");
+        Paciente otro = repositoryPaciente.save(new Paciente("Otro", 50, "cita", "33333333C", medico));
+        byte[] png = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        imagenService.uploadImage(new MockMultipartFile("image", "otra.png", "image/png", png), otro);
+        Imagen otra = repositoryImagen.getByPacienteId(otro.getId()).get(0);
+        informeService.addInforme(new Informe(null, "Microcalcificaciones dispersas", otra));
+        assertEquals(2, informeIndice.getDocumentos());
+
+        pacienteService.removePacienteID(paciente.getId());
+        assertEquals(1, informeIndice.getDocumentos());
+
+        medicoService.removeMedicoID(medico.getId());
+        assertEquals(0, informeIndice.getDocumentos());
+        esperarTotal("microcalcificaciones", 0);
+    }
+
+    // Cambios que el indice no llego a recibir (la aplicacion se detuvo antes de confirmarlos): se
+    // reindexan los informes modificados desde la marca
+    @Test
+    void reconciliaLosInformesModificados() throws Exception {
+        Informe cambiado = informe("Mama densa sin hallazgos");
+        esperarTotal("densa", 1);
+        long desde = System.currentTimeMillis();
+
+        Informe nuevo = repositoryInforme.save(new Informe(null, "Microcalcificaciones nuevas", imagen));
+        Informe guardado = repositoryInforme.findById(cambiado.getId()).orElseThrow();
+        guardado.setContenido("Microcalcificaciones en la revision");
+        repositoryInforme.save(guardado);
+        buscar("microcalcificaciones").andExpect(jsonPath("$.length()").value(0));
+
+        informeIndice.reconciliar(desde);
+
+        esperarTotal("microcalcificaciones", 2);
+        buscar("densa").andExpect(jsonPath("$.length()").value(0));
+        buscar("nuevas").andExpect(jsonPath("$[0].informe.id").value(nuevo.getId()));
+    }
+
+    // Con distinto numero de documentos que de informes se comparan los ids, aunque no haya informes
+    // modificados desde la marca
+    @Test
+    void reconciliaLosInformesQueFaltanYLosBorrados() throws Exception {
+        Informe borrado = informe("Informe borrado sin pasar por el indice");
+        esperarTotal("borrado", 1);
+        repositoryInforme.deleteById(borrado.getId());
+        Informe primero = repositoryInforme.save(new Informe(null, "Informe sin indexar", imagen));
+        Informe segundo = repositoryInforme.save(new Informe(null, "Otro informe sin indexar", imagen));
+
+        informeIndice.reconciliar(Long.MAX_VALUE);
+
+        // Antes de buscar: las busquedas tambien quitan del indice los informes que ya no existen
+        assertEquals(2, informeIndice.getDocumentos());
+        esperarTotal("&size=10", 2);
+        buscar("&size=10")
+            .andExpect(jsonPath("$[*].informe.id", containsInAnyOrder((int) primero.getId(), (int) segundo.getId())));
+    }
+
+    private Informe informe(String contenido) {
+        return informeService.addInforme(new Informe(null, contenido, imagen));
+    }
+
+    // Lo que hace PrediccionWorker al terminar una prediccion
+    private void prediccion(Informe informe, String prediccion) {
+        repositoryInforme.updatePrediccion(informe.getId(), prediccion, Informe.EstadoPrediccion.COMPLETADA,
+                System.currentTimeMillis());
+        informeIndice.indexar(informe.getId());
+    }
+
+    private ResultActions buscar(String consulta) throws Exception {
+        return mockMvc.perform(get("/informe/busqueda?q=" + consulta));
+    }
+
+    // Los cambios del indice se ven en las busquedas en menos de un segundo (near real time)
+    private void esperarTotal(String consulta, int total) throws Exception {
+        esperar(() -> {
+            try {
+                return String.valueOf(total).equals(buscar(consulta).andReturn().getResponse().getHeader("X-Total-Count"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "no se cumplio la condicion en 5 s");
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.uma.example.springuma.integration;
+
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Calendar;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.RepositoryImagen;
+import com.uma.example.springuma.model.RepositoryInforme;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.model.RepositoryPaciente;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Numero de sentencias SQL que ejecuta cada endpoint de listado: si alguna relacion vuelve a
+// cargarse fila a fila (N+1), el recuento sube y el test falla. Los listados de pacientes e informes
+// consultan antes el validador de su ETag; con un If-None-Match que coincide, solo el validador
+@TestPropertySource(properties = "prediccion.cola.intervalo-ms=3600000") // el worker no debe lanzar consultas durante la medida
+public class ConsultasSqlTest extends AbstractIntegration {
+
+    private static final int IMAGENES = 5;
+    private static final int INFORMES = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    private Medico medico;
+    private Paciente paciente;
+    private Imagen imagen;
+    private Informe informe;
+
+    @BeforeEach
+    void setUp() {
+        medico = repositoryMedico.save(new Medico("11111111A", "Medico", "Radiologia"));
+        for (int i = 0; i < 3; i++) {
+            paciente = repositoryPaciente.save(new Paciente("Paciente " + i, 30 + i, "cita", "2222222" + i, medico));
+        }
+        for (int i = 0; i < IMAGENES; i++) {
+            Imagen nueva = new Imagen();
+            nueva.setNombre("imagen" + i + ".png");
+            nueva.setFecha(Calendar.getInstance());
+            nueva.setPaciente(paciente);
+            imagen = repositoryImagen.save(nueva);
+        }
+        for (int i = 0; i < INFORMES; i++) {
+            informe = repositoryInforme.save(new Informe("prediccion", "contenido " + i, imagen));
+        }
+    }
+
+    @Test
+    void informesDeUnaImagenEnUnaConsulta() throws Exception {
+        assertEquals(2, sentencias("/informe/imagen/" + imagen.getId()));
+        assertEquals(2, sentencias("/informe/imagen/" + imagen.getId() + "?after=0&size=2"));
+        assertEquals(2, sentencias("/informe/" + informe.getId()));
+    }
+
+    @Test
+    void imagenesDeUnPacienteEnUnaConsulta() throws Exception {
+        assertEquals(1, sentencias("/imagen/paciente/" + paciente.getId()));
+        assertEquals(1, sentencias("/imagen/paciente/" + paciente.getId() + "?after=0&size=2"));
+        assertEquals(1, sentencias("/imagen/info/" + imagen.getId()));
+    }
+
+    @Test
+    void pacientesDeUnMedicoEnUnaConsulta() throws Exception {
+        assertEquals(2, sentencias("/paciente/medico/" + medico.getId()));
+        assertEquals(2, sentencias("/paciente/medico/" + medico.getId() + "?after=0&size=2"));
+    }
+
+    @Test
+    void noModificadoSoloConsultaElValidador() throws Exception {
+        for (String url : List.of("/paciente/medico/" + medico.getId(), "/informe/imagen/" + imagen.getId(),
+                "/informe/" + informe.getId())) {
+            String etag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertTrue(etag.startsWith("W/"), url);
+            assertEquals(1, sentencias(get(url).header(HttpHeaders.IF_NONE_MATCH, etag), status().isNotModified()), url);
+        }
+
+        // Un cambio en un paciente cambia el ETag de los listados en los que aparece
+        String url = "/paciente/medico/" + medico.getId();
+        String etag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Thread.sleep(2);
+        paciente.setNombre("Paciente modificado");
+        repositoryPaciente.save(paciente);
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+        mockMvc.perform(get("/informe/imagen/" + imagen.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk());
+    }
+
+    private long sentencias(String url) throws Exception {
+        return sentencias(get(url), status().isOk());
+    }
+
+    // Ejecuta la peticion con la cache de segundo nivel vacia, para que cuente todo lo que iria a la base de datos
+    private long sentencias(MockHttpServletRequestBuilder peticion, ResultMatcher resultado) throws Exception {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        sessionFactory.getStatistics().clear();
+        mockMvc.perform(peticion).andExpect(resultado);
+        return sessionFactory.getStatistics().getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,251 @@
+package com.uma.example.springuma.integration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.FileSystemImageStore;
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.MedicoService;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PacienteService;
+import com.uma.example.springuma.model.RepositoryContenidoReferencia;
+import com.uma.example.springuma.model.RepositoryImagen;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.model.RepositoryPaciente;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Referencias al contenido compartido en el almacen en disco: subidas y borrados simultaneos del mismo
+// contenido, subidas deshechas y borrados en cascada de pacientes y medicos
+@TestPropertySource(properties = {"prediccion.cola.intervalo-ms=3600000", "imagen.variantes.al-subir=false"})
+public class ContenidoReferenciasTest extends AbstractIntegration {
+
+    private static final int HILOS = 6;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private PacienteService pacienteService;
+
+    @Autowired
+    private MedicoService medicoService;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private RepositoryContenidoReferencia repositoryContenidoReferencia;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${imagen.store.path}")
+    private String directorio;
+
+    private final Random random = new Random();
+    private ExecutorService executor;
+    private Medico medico;
+    private Paciente paciente;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(HILOS);
+        medico = repositoryMedico.save(new Medico("11111111A", "Medico", "Radiologia"));
+        paciente = repositoryPaciente.save(new Paciente("Paciente", 40, "cita", "22222222B", medico));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void subidasSimultaneasGuardanElContenidoUnaVez() throws Exception {
+        byte[] contenido = contenido();
+        todas(HILOS, () -> subir(contenido, paciente));
+
+        assertEquals(Optional.of((long) HILOS), referencias(contenido));
+        assertTrue(Files.exists(fichero(contenido)));
+        for (Imagen imagen : repositoryImagen.findAll()) {
+            assertArrayEquals(contenido, imagenService.downloadImage(imagen.getId()));
+        }
+    }
+
+    @Test
+    void borradosSimultaneosBorranElContenidoConElUltimo() throws Exception {
+        byte[] contenido = contenido();
+        for (int i = 0; i < HILOS; i++) {
+            subir(contenido, paciente);
+        }
+        List<Long> ids = repositoryImagen.findAll().stream().map(Imagen::getId).toList();
+        borrarTodas(ids);
+
+        assertEquals(Optional.empty(), referencias(contenido));
+        assertFalse(Files.exists(fichero(contenido)));
+    }
+
+    // Mientras se borran unas imagenes se suben otras con el mismo contenido: el contenido no debe
+    // desaparecer mientras quede alguna
+    @Test
+    void subidasYBorradosSimultaneosMantienenElContenido() throws Exception {
+        byte[] contenido = contenido();
+        for (int i = 0; i < HILOS / 2; i++) {
+            subir(contenido, paciente);
+        }
+        List<Long> ids = repositoryImagen.findAll().stream().map(Imagen::getId).toList();
+        List<Callable<Object>> tareas = new ArrayList<>();
+        for (Long id : ids) {
+            tareas.add(() -> {
+                imagenService.removeImagenByID(id);
+                return null;
+            });
+            tareas.add(() -> subir(contenido, paciente));
+        }
+        esperar(executor.invokeAll(tareas));
+
+        assertEquals(Optional.of((long) ids.size()), referencias(contenido));
+        assertTrue(Files.exists(fichero(contenido)));
+    }
+
+    @Test
+    void subidaDeshechaNoDejaReferenciaNiContenido() throws Exception {
+        byte[] contenido = contenido();
+        subirYDeshacer(contenido);
+
+        assertEquals(0, repositoryImagen.count());
+        assertEquals(Optional.empty(), referencias(contenido));
+        assertFalse(Files.exists(fichero(contenido)));
+    }
+
+    @Test
+    void subidaDeshechaNoBorraContenidoCompartido() throws Exception {
+        byte[] contenido = contenido();
+        subir(contenido, paciente);
+        subirYDeshacer(contenido);
+
+        assertEquals(1, repositoryImagen.count());
+        assertEquals(Optional.of(1L), referencias(contenido));
+        assertTrue(Files.exists(fichero(contenido)));
+    }
+
+    @Test
+    void borrarPacienteLiberaSusImagenes() throws Exception {
+        byte[] propio = contenido();
+        byte[] compartido = contenido();
+        Paciente otro = repositoryPaciente.save(new Paciente("Otro", 50, "cita", "33333333C", medico));
+        subir(propio, paciente);
+        subir(compartido, paciente);
+        subir(compartido, otro);
+
+        pacienteService.removePacienteID(paciente.getId());
+
+        assertEquals(Optional.empty(), referencias(propio));
+        assertFalse(Files.exists(fichero(propio)));
+        assertEquals(Optional.of(1L), referencias(compartido));
+        assertTrue(Files.exists(fichero(compartido)));
+    }
+
+    @Test
+    void borrarMedicoLiberaLasImagenesDeSusPacientes() throws Exception {
+        byte[] contenido = contenido();
+        Paciente otro = repositoryPaciente.save(new Paciente("Otro", 50, "cita", "33333333C", medico));
+        subir(contenido, paciente);
+        subir(contenido, otro);
+
+        medicoService.removeMedicoID(medico.getId());
+
+        assertEquals(0, repositoryImagen.count());
+        assertEquals(Optional.empty(), referencias(contenido));
+        assertFalse(Files.exists(fichero(contenido)));
+    }
+
+    private Object subir(byte[] contenido, Paciente paciente) throws Exception {
+        return imagenService.uploadImage(new MockMultipartFile("image", "imagen.png", "image/png", contenido), paciente);
+    }
+
+    // La imagen se inserta y la transaccion que la contiene se deshace despues
+    private void subirYDeshacer(byte[] contenido) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try {
+                subir(contenido, paciente);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+    }
+
+    // Contenido distinto en cada test: el directorio del almacen es comun a todos
+    private byte[] contenido() {
+        byte[] contenido = new byte[4096];
+        random.nextBytes(contenido);
+        return contenido;
+    }
+
+    private Optional<Long> referencias(byte[] contenido) {
+        String hash = ImageUtils.hashImage(contenido);
+        return repositoryContenidoReferencia.findReferenciasByClave(FileSystemImageStore.TIPO + ":" + hash);
+    }
+
+    private Path fichero(byte[] contenido) {
+        String hash = ImageUtils.hashImage(contenido);
+        return Path.of(directorio).resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private void todas(int veces, Callable<Object> tarea) throws Exception {
+        List<Callable<Object>> tareas = new ArrayList<>();
+        for (int i = 0; i < veces; i++) {
+            tareas.add(tarea);
+        }
+        esperar(executor.invokeAll(tareas));
+    }
+
+    private void borrarTodas(List<Long> ids) throws Exception {
+        List<Callable<Object>> tareas = new ArrayList<>();
+        for (Long id : ids) {
+            tareas.add(() -> {
+                imagenService.removeImagenByID(id);
+                return null;
+            });
+        }
+        esperar(executor.invokeAll(tareas));
+    }
+
+    private static void esperar(List<Future<Object>> resultados) throws Exception {
+        for (Future<Object> resultado : resultados) {
+            resultado.get();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.uma.example.springuma.integration;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.RepositoryImagen;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.model.RepositoryPaciente;
+import com.uma.example.springuma.model.VarianteImagen;
+import com.uma.example.springuma.utils.ImageUtils;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Contrato HTTP de la descarga de imagenes: ETag fuerte (el hash del contenido) con cache inmutable,
+// 304 sin ir a la base de datos, descargas parciales (Range) y variantes reducidas (?size=), con el
+// original si la imagen no se puede reducir. Lados pequeños para que la imagen de prueba se reduzca
+@TestPropertySource(properties = {"prediccion.cola.intervalo-ms=3600000", "imagen.variantes.al-subir=false",
+    "imagen.variantes.thumbnail=16", "imagen.variantes.preview=32"})
+public class ImagenDescargaTest extends AbstractIntegration {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    private Paciente paciente;
+
+    @BeforeEach
+    void setUp() {
+        Medico medico = repositoryMedico.save(new Medico("11111111A", "Medico", "Radiologia"));
+        paciente = repositoryPaciente.save(new Paciente("Paciente", 40, "cita", "22222222B", medico));
+    }
+
+    @Test
+    void etagFuerteYCacheInmutable() throws Exception {
+        byte[] png = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        long id = subir("healthy.png", png);
+        String etag = "\"" + ImageUtils.hashImage(png) + "\"";
+
+        descargar(get("/imagen/" + id))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL,
+                allOf(containsString("max-age=31536000"), containsString("immutable"), containsString("private"))))
+            .andExpect(content().bytes(png));
+    }
+
+    // El validador sale de la cache de contenidos: un 304 no ejecuta ninguna sentencia SQL
+    @Test
+    void noModificadoSinConsultarLaBaseDeDatos() throws Exception {
+        byte[] png = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        long id = subir("healthy.png", png);
+        String etag = descargar(get("/imagen/" + id)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getStatistics().clear();
+        mockMvc.perform(get("/imagen/" + id).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+            .andExpect(content().bytes(new byte[0]));
+        assertEquals(0, sessionFactory.getStatistics().getPrepareStatementCount());
+
+        // Otro ETag (otra version en la cache del cliente): se envia la imagen
+        descargar(get("/imagen/" + id).header(HttpHeaders.IF_NONE_MATCH, "\"otro\""))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(png));
+    }
+
+    @Test
+    void descargaParcial() throws Exception {
+        byte[] png = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        long id = subir("healthy.png", png);
+
+        mockMvc.perform(get("/imagen/" + id).header(HttpHeaders.RANGE, "bytes=0-9"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-9/" + png.length))
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(content().bytes(Arrays.copyOfRange(png, 0, 10)));
+        mockMvc.perform(get("/imagen/" + id).header(HttpHeaders.RANGE, "bytes=-5"))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().bytes(Arrays.copyOfRange(png, png.length - 5, png.length)));
+        mockMvc.perform(get("/imagen/" + id).header(HttpHeaders.RANGE, "bytes=" + png.length + "-"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + png.length));
+    }
+
+    @Test
+    void variantesReducidasEnJpeg() throws Exception {
+        byte[] png = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        long id = subir("healthy.png", png);
+        String hash = ImageUtils.hashImage(png);
+
+        for (VarianteImagen variante : List.of(VarianteImagen.THUMBNAIL, VarianteImagen.PREVIEW)) {
+            String url = "/imagen/" + id + "?size=" + variante.getNombre();
+            String etag = "\"" + hash + "-" + variante.getNombre() + "\"";
+            byte[] reducida = descargar(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andReturn().getResponse().getContentAsByteArray();
+            BufferedImage imagen = ImageIO.read(new ByteArrayInputStream(reducida));
+            assertEquals(variante == VarianteImagen.THUMBNAIL ? 16 : 32, Math.max(imagen.getWidth(), imagen.getHeight()));
+
+            mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+            mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=0-1"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andExpect(content().bytes(new byte[] {(byte) 0xFF, (byte) 0xD8}));
+        }
+    }
+
+    // Contenido que ImageIO no sabe leer (WebP sin plugin) o danado: las variantes sirven el original,
+    // con su tipo y su ETag
+    @Test
+    void sinVariantesSeSirveElOriginal() throws Exception {
+        byte[] webp = "RIFF\0\0\0\0WEBPVP8 contenido".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] danada = Arrays.copyOf(Files.readAllBytes(Path.of("src/test/resources/healthy.png")), 40);
+        for (byte[] original : List.of(webp, danada)) {
+            long id = subir("imagen", original);
+            String tipo = original == webp ? "image/webp" : "image/png";
+            for (String size : List.of("thumbnail", "preview")) {
+                descargar(get("/imagen/" + id + "?size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_TYPE, tipo))
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"" + ImageUtils.hashImage(original) + "\""))
+                    .andExpect(content().bytes(original));
+            }
+        }
+    }
+
+    @Test
+    void imagenInexistenteOVarianteDesconocida() throws Exception {
+        long id = subir("healthy.png", Files.readAllBytes(Path.of("src/test/resources/healthy.png")));
+
+        mockMvc.perform(get("/imagen/" + (id + 1000))).andExpect(status().isNotFound());
+        mockMvc.perform(get("/imagen/" + id + "?size=enorme")).andExpect(status().isBadRequest());
+    }
+
+    private long subir(String nombre, byte[] contenido) throws Exception {
+        imagenService.uploadImage(new MockMultipartFile("image", nombre, "application/octet-stream", contenido), paciente);
+        return repositoryImagen.findAll().stream().mapToLong(imagen -> imagen.getId()).max().orElseThrow();
+    }
+
+    // El contenido se escribe de forma asincrona (StreamingResponseBody)
+    private ResultActions descargar(MockHttpServletRequestBuilder peticion) throws Exception {
+        MvcResult resultado = mockMvc.perform(peticion).andReturn();
+        return mockMvc.perform(asyncDispatch(resultado));
+    }
+}
@@ -0,0 +1,261 @@
+package com.uma.example.springuma.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.hibernate.SessionEventListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.FileSystemImageStore;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.RepositoryContenidoReferencia;
+import com.uma.example.springuma.model.RepositoryImagen;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.model.RepositoryPaciente;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Importaciones masivas: sentencias por lote, errores por fila, reintento fila a fila de un lote
+// fallido, contenido liberado de las imagenes que no se insertan y limites de tamaño
+@TestPropertySource(properties = {"prediccion.cola.intervalo-ms=3600000", "imagen.variantes.al-subir=false",
+    "importacion.max-tamano=512KB", "importacion.imagenes.max-imagen=20KB", "importacion.imagenes.max-descomprimido=100KB",
+    "spring.jpa.properties.hibernate.session.events.auto=com.uma.example.springuma.integration.ImportacionTest$Sentencias"})
+public class ImportacionTest extends AbstractIntegration {
+
+    // Sentencias preparadas en el hilo del test (MockMvc atiende la peticion en el mismo hilo): las
+    // estadisticas de Hibernate tambien cuentan las tareas en segundo plano del arranque
+    public static class Sentencias implements SessionEventListener {
+
+        static volatile Thread hilo;
+        static final AtomicInteger preparadas = new AtomicInteger();
+
+        @Override
+        public void jdbcPrepareStatementStart() {
+            if (Thread.currentThread() == hilo) {
+                preparadas.incrementAndGet();
+            }
+        }
+    }
+
+    private static final String CSV = "text/csv";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String ZIP = "application/zip";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private RepositoryContenidoReferencia repositoryContenidoReferencia;
+
+    @Value("${imagen.store.path}")
+    private String directorio;
+
+    private final Random random = new Random();
+
+    // 2000 medicos en 4 lotes de 500: por lote, la consulta de dni existentes, 10 llamadas a la secuencia
+    // (50 ids por llamada) y un unico insert preparado que se ejecuta en grupos de 50. El optimizador de
+    // la secuencia hace una llamada mas la primera vez
+    @Test
+    void medicosPorLotes() throws Exception {
+        StringBuilder csv = new StringBuilder("dni,nombre,especialidad\n");
+        for (int i = 0; i < 2000; i++) {
+            csv.append("M").append(i).append(",Medico ").append(i).append(",Radiologia\n");
+        }
+        Sentencias.preparadas.set(0);
+        Sentencias.hilo = Thread.currentThread();
+
+        importar("/importacion/medicos", CSV, csv.toString())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.importados").value(2000))
+            .andExpect(jsonPath("$.fallidos").value(0));
+
+        Sentencias.hilo = null;
+        assertEquals(4 * (1 + 10 + 1) + 1, Sentencias.preparadas.get());
+        assertEquals(2000, repositoryMedico.count());
+    }
+
+    @Test
+    void erroresPorFila() throws Exception {
+        Medico existente = repositoryMedico.save(new Medico("11111111A", "Existente", "Radiologia"));
+        String csv = "dni,nombre,especialidad\n"
+            + "22222222B,\"Perez, Ana\",Radiologia\n"
+            + ",Sin dni,Radiologia\n"
+            + "11111111A,Repetido,Radiologia\n"
+            + "33333333C,Campos de mas,Radiologia,x\n"
+            + "44444444D,\"Sin cerrar,Radiologia\n"
+            + "\n"
+            + "22222222B,Repetido en el fichero,Radiologia\n";
+
+        importar("/importacion/medicos", CSV, csv)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.importados").value(1))
+            .andExpect(jsonPath("$.fallidos").value(5))
+            .andExpect(jsonPath("$.errores[0].fila").value("3"))
+            .andExpect(jsonPath("$.errores[0].error").value("Falta el campo dni"))
+            .andExpect(jsonPath("$.errores[1].fila").value("5"))
+            .andExpect(jsonPath("$.errores[2].fila").value("6"))
+            .andExpect(jsonPath("$.errores[3].fila").value("4"))
+            .andExpect(jsonPath("$.errores[4].fila").value("8"));
+        assertEquals("Perez, Ana", repositoryMedico.getMedicoByDni("22222222B").getNombre());
+
+        String ndjson = "{\"dni\": \"55555555E\", \"nombre\": \"Paciente\", \"edad\": 40, \"medico\": {\"dni\": \"11111111A\"}}\n"
+            + "{\"dni\": \"66666666F\", \"edad\": \"cuarenta\"}\n"
+            + "{\"dni\": \"77777777G\", \"medicoDni\": \"00000000X\"}\n"
+            + "no es json\n"
+            + "[1, 2]\n";
+        importar("/importacion/pacientes", NDJSON, ndjson)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.importados").value(1))
+            .andExpect(jsonPath("$.fallidos").value(4))
+            .andExpect(jsonPath("$.errores[0].fila").value("2"))
+            .andExpect(jsonPath("$.errores[0].error").value("edad no es un numero: cuarenta"))
+            .andExpect(jsonPath("$.errores[1].fila").value("4"))
+            .andExpect(jsonPath("$.errores[2].fila").value("5"))
+            .andExpect(jsonPath("$.errores[3].fila").value("3"))
+            .andExpect(jsonPath("$.errores[3].error").value("No existe el medico 00000000X"));
+        assertEquals(existente.getId(), repositoryPaciente.findByDni("55555555E").getMedico().getId());
+    }
+
+    // Un valor que solo rechaza la base de datos hace fallar su lote entero: el lote se repite fila a
+    // fila y solo esa fila queda sin importar
+    @Test
+    void loteFallidoSeRepiteFilaAFila() throws Exception {
+        StringBuilder csv = new StringBuilder("dni,nombre,especialidad\n");
+        for (int i = 0; i < 600; i++) {
+            csv.append("M").append(i).append(",").append(i == 10 ? "x".repeat(300) : "Medico " + i).append(",Radiologia\n");
+        }
+
+        importar("/importacion/medicos", CSV, csv.toString())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.importados").value(599))
+            .andExpect(jsonPath("$.fallidos").value(1))
+            .andExpect(jsonPath("$.errores[0].fila").value("12"));
+        assertEquals(599, repositoryMedico.count());
+    }
+
+    // Las imagenes que fallan (paciente inexistente, demasiado grandes o rechazadas por la base de datos
+    // al insertarlas) no dejan contenido en el almacen
+    @Test
+    void imagenesConErroresNoDejanContenido() throws Exception {
+        Medico medico = repositoryMedico.save(new Medico("11111111A", "Medico", "Radiologia"));
+        repositoryPaciente.save(new Paciente("Paciente", 40, "cita", "22222222B", medico));
+        byte[] valida = contenido(4 * 1024);
+        byte[] nombreLargo = contenido(4 * 1024);
+        byte[] grande = contenido(30 * 1024);
+        Map<String, byte[]> entradas = new LinkedHashMap<>();
+        entradas.put("22222222B/valida.png", valida);
+        entradas.put("00000000X/sin-paciente.png", contenido(1024));
+        entradas.put("22222222B/" + "x".repeat(300) + ".png", nombreLargo);
+        entradas.put("22222222B/grande.png", grande);
+        entradas.put("sin-carpeta.png", contenido(1024));
+
+        importar("/importacion/imagenes", ZIP, zip(entradas))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.importados").value(1))
+            .andExpect(jsonPath("$.fallidos").value(4));
+
+        assertEquals(1, repositoryImagen.count());
+        assertTrue(almacenado(valida));
+        assertFalse(almacenado(nombreLargo));
+        assertFalse(almacenado(grande));
+    }
+
+    @Test
+    void cuerpoDemasiadoGrande() throws Exception {
+        StringBuilder csv = new StringBuilder("dni,nombre,especialidad\n");
+        while (csv.length() <= 512 * 1024) {
+            csv.append("M").append(csv.length()).append(",Medico,Radiologia\n");
+        }
+
+        importar("/importacion/medicos", CSV, csv.toString())
+            .andExpect(status().isPayloadTooLarge());
+        assertEquals(0, repositoryMedico.count());
+    }
+
+    // Mas de 100KB descomprimidos: se detiene la importacion y se libera el contenido de las imagenes
+    // leidas que aun no se habian guardado
+    @Test
+    void zipDescomprimidoDemasiadoGrande() throws Exception {
+        Medico medico = repositoryMedico.save(new Medico("11111111A", "Medico", "Radiologia"));
+        repositoryPaciente.save(new Paciente("Paciente", 40, "cita", "22222222B", medico));
+        Map<String, byte[]> entradas = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            entradas.put("22222222B/imagen" + i + ".png", contenido(15 * 1024));
+        }
+
+        importar("/importacion/imagenes", ZIP, zip(entradas))
+            .andExpect(status().isPayloadTooLarge())
+            .andExpect(jsonPath("$.importados").value(0))
+            .andExpect(jsonPath("$.errores[0].fila").value("*"));
+
+        assertEquals(0, repositoryImagen.count());
+        for (byte[] contenido : entradas.values()) {
+            assertFalse(almacenado(contenido));
+        }
+    }
+
+    private ResultActions importar(String url, String tipo, String contenido) throws Exception {
+        return importar(url, tipo, contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ResultActions importar(String url, String tipo, byte[] contenido) throws Exception {
+        return mockMvc.perform(post(url).contentType(tipo).content(contenido));
+    }
+
+    private static byte[] zip(Map<String, byte[]> entradas) throws IOException {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            for (Map.Entry<String, byte[]> entrada : entradas.entrySet()) {
+                out.putNextEntry(new ZipEntry(entrada.getKey()));
+                out.write(entrada.getValue());
+                out.closeEntry();
+            }
+        }
+        return zip.toByteArray();
+    }
+
+    // Contenido distinto en cada test: el directorio del almacen es comun a todos
+    private byte[] contenido(int tamano) {
+        byte[] contenido = new byte[tamano];
+        random.nextBytes(contenido);
+        return contenido;
+    }
+
+    private boolean almacenado(byte[] contenido) {
+        String hash = ImageUtils.hashImage(contenido);
+        Path fichero = Path.of(directorio).resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+        return repositoryContenidoReferencia.findReferenciasByClave(FileSystemImageStore.TIPO + ":" + hash).isPresent()
+            || Files.exists(fichero);
+    }
+}
@@ -0,0 +1,46 @@
+package com.uma.example.springuma.integration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+
+// Plan de ejecucion (EXPLAIN de H2) de las consultas frecuentes sobre el esquema que crean las
+// migraciones de Flyway: cada una debe resolverse con un indice y no recorriendo la tabla entera
+@TestPropertySource(properties = "prediccion.cola.intervalo-ms=3600000")
+public class IndicesTest extends AbstractIntegration {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Listados por clave ajena: por pagina y por cursor (?after=), que usa el indice compuesto (clave ajena, id)
+    @Test
+    void listadosUsanIndice() {
+        usaIndice("select id, nombre, fecha from imagen where paciente_id = 1 order by id", "PACIENTE_ID =");
+        usaIndice("select id, nombre, fecha from imagen where paciente_id = 1 and id > 10 order by id", "IDX_IMAGEN_PACIENTE");
+        usaIndice("select id, prediccion, contenido from informe where imagen_id = 1 order by id", "IMAGEN_ID =");
+        usaIndice("select id, prediccion, contenido from informe where imagen_id = 1 and id > 10 order by id", "IDX_INFORME_IMAGEN");
+        usaIndice("select id, nombre, dni from paciente where medico_id = 1 order by id", "MEDICO_ID =");
+        usaIndice("select id, nombre, dni from paciente where medico_id = 1 and id > 10 order by id", "IDX_PACIENTE_MEDICO");
+    }
+
+    @Test
+    void busquedasUsanIndice() {
+        usaIndice("select id from paciente where dni = '12345678A'", "DNI =");
+        usaIndice("select id from medico where dni = '12345678A'", "DNI =");
+        usaIndice("select id from prediccion_tarea where estado = 'PENDIENTE' and proximo_intento <= 1000 order by proximo_intento",
+            "IDX_PREDICCION_TAREA_ESTADO");
+    }
+
+    // H2 indica entre comentarios el indice elegido, o tableScan si no usa ninguno
+    private void usaIndice(String consulta, String esperado) {
+        String plan = jdbcTemplate.queryForObject("explain " + consulta, String.class);
+        assertFalse(plan.contains("tableScan"), plan);
+        assertTrue(plan.contains(esperado), plan);
+    }
+}
@@ -0,0 +1,110 @@
+package com.uma.example.springuma.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.CoreMigrationType;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Una base de datos creada por Hibernate con ddl-auto=update (antes de Flyway), con datos: se marca como
+// version 1, recibe las migraciones siguientes, pasa la validacion de Hibernate y sus datos se siguen leyendo
+@TestPropertySource(properties = {"prediccion.cola.intervalo-ms=3600000",
+    "spring.flyway.baseline-on-migrate=true", "spring.flyway.baseline-version=1"})
+public class MigracionesTest extends AbstractIntegration {
+
+    private static final String URL = "jdbc:h2:mem:ddl_update_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    private static byte[] imagen;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @DynamicPropertySource
+    static void baseDeDatos(DynamicPropertyRegistry registro) throws Exception {
+        imagen = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        try (Connection conexion = DriverManager.getConnection(URL, "test", "test");
+             Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("runscript from 'classpath:esquema-ddl-update.sql'");
+            sentencia.execute("insert into medico (id, dni, nombre, especialidad) values (1, '11111111A', 'Medico', 'Radiologia')");
+            sentencia.execute("insert into paciente (id, nombre, edad, cita, dni, medico_id) values (1, 'Paciente', 40, 'cita', '22222222B', 1)");
+            insertarImagen(conexion);
+            sentencia.execute("insert into informe (id, prediccion, contenido, imagen_id) "
+                + "values (1, 'Cancer (label 1), score: 0.9', 'Microcalcificaciones agrupadas', 1)");
+            // Hibernate ya habia reservado ids de las secuencias (allocationSize 50)
+            for (String secuencia : List.of("medico_seq", "paciente_seq", "imagen_seq", "informe_seq")) {
+                sentencia.execute("alter sequence " + secuencia + " restart with 51");
+            }
+        }
+        registro.add("spring.datasource.url", () -> URL);
+    }
+
+    private static void insertarImagen(Connection conexion) throws SQLException {
+        try (PreparedStatement insert = conexion.prepareStatement(
+                "insert into imagen (id, nombre, fecha, paciente_id, file_content) values (1, 'healthy.png', current_timestamp, 1, ?)")) {
+            // Antes del almacen la subida guardaba la imagen comprimida (deflate) en la fila
+            insert.setBytes(1, ImageUtils.compressImage(imagen));
+            insert.executeUpdate();
+        }
+    }
+
+    @Test
+    void migraUnaBaseDeDatosCreadaPorHibernate() throws Exception {
+        MigrationInfo[] aplicadas = flyway.info().applied();
+        assertEquals(0, flyway.info().pending().length);
+        assertEquals("1", aplicadas[0].getVersion().getVersion());
+        assertEquals(CoreMigrationType.BASELINE, aplicadas[0].getType());
+        for (int i = 1; i < aplicadas.length; i++) {
+            assertEquals(String.valueOf(i + 1), aplicadas[i].getVersion().getVersion());
+            assertEquals(MigrationState.SUCCESS, aplicadas[i].getState());
+        }
+
+        // El contenido sigue en la fila de la imagen; el informe ya tenia su prediccion
+        MvcResult descarga = mockMvc.perform(get("/imagen/1")).andReturn();
+        mockMvc.perform(asyncDispatch(descarga))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(imagen));
+        mockMvc.perform(get("/informe/1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.estadoPrediccion").value("COMPLETADA"));
+        mockMvc.perform(get("/paciente/medico/1"))
+            .andExpect(jsonPath("$[0].dni").value("22222222B"));
+
+        Medico nuevo = repositoryMedico.save(new Medico("33333333C", "Nuevo", "Radiologia"));
+        assertTrue(nuevo.getId() > 1);
+    }
+}
@@ -0,0 +1,187 @@
+package com.uma.example.springuma.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.CircuitoAbiertoException;
+import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.InformeService;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PrediccionTarea;
+import com.uma.example.springuma.model.PrediccionWorker;
+import com.uma.example.springuma.model.Predictor;
+import com.uma.example.springuma.model.PredictorException;
+import com.uma.example.springuma.model.RepositoryImagen;
+import com.uma.example.springuma.model.RepositoryInforme;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.model.RepositoryPaciente;
+import com.uma.example.springuma.model.RepositoryPrediccionTarea;
+
+// Cola de predicciones con un modelo que responde lo que le indica cada test: reintentos con backoff,
+// tarea FALLIDA al agotar los intentos y aplazamiento sin gastar intentos mientras el circuito esta abierto
+@TestPropertySource(properties = {"prediccion.cola.intervalo-ms=3600000", "imagen.variantes.al-subir=false",
+    "prediccion.cola.max-intentos=3", "prediccion.cola.backoff-inicial-ms=1", "prediccion.cola.backoff-max-ms=1"})
+public class PrediccionWorkerTest extends AbstractIntegration {
+
+    @TestConfiguration
+    static class Configuracion {
+
+        @Bean
+        @Primary
+        PredictorGuionizado predictorGuionizado() {
+            return new PredictorGuionizado();
+        }
+    }
+
+    // Devuelve en orden las respuestas (Map) o errores (Throwable) encolados
+    static class PredictorGuionizado implements Predictor {
+
+        private final Queue<Object> respuestas = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger llamadas = new AtomicInteger();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public CompletableFuture<Map<String, Double>> query(byte[] file_data) {
+            llamadas.incrementAndGet();
+            Object respuesta = respuestas.poll();
+            if (respuesta instanceof Throwable error) {
+                return CompletableFuture.failedFuture(error);
+            }
+            return CompletableFuture.completedFuture((Map<String, Double>) respuesta);
+        }
+    }
+
+    private static final Map<String, Double> CANCER = Map.of("LABEL_0", 0.1, "LABEL_1", 0.9);
+
+    @Autowired
+    private PredictorGuionizado predictor;
+
+    @Autowired
+    private PrediccionWorker prediccionWorker;
+
+    @Autowired
+    private InformeService informeService;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    @Autowired
+    private RepositoryPrediccionTarea repositoryPrediccionTarea;
+
+    private Informe informe;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Medico medico = repositoryMedico.save(new Medico("11111111A", "Medico", "Radiologia"));
+        Paciente paciente = repositoryPaciente.save(new Paciente("Paciente", 40, "cita", "22222222B", medico));
+        byte[] png = Files.readAllBytes(Path.of("src/test/resources/healthy.png"));
+        imagenService.uploadImage(new MockMultipartFile("image", "healthy.png", "image/png", png), paciente);
+        informe = informeService.addInforme(new Informe(null, "Informe", repositoryImagen.findAll().get(0)));
+    }
+
+    @Test
+    void reintentaLosFallosYCompleta() throws Exception {
+        predictor.respuestas.add(new PredictorException("El servicio de prediccion respondio 500: error", 500));
+        predictor.respuestas.add(CANCER);
+
+        prediccionWorker.procesar();
+        esperar(() -> tarea() != null && tarea().getIntentos() == 1 && tarea().getEstado() == PrediccionTarea.Estado.PENDIENTE);
+        assertTrue(tarea().getUltimoError().contains("500"));
+        assertEquals(Informe.EstadoPrediccion.PENDIENTE, estado());
+
+        esperar(() -> tarea().getProximoIntento() <= System.currentTimeMillis());
+        prediccionWorker.procesar();
+        // La tarea se borra despues de guardar la prediccion
+        esperar(() -> tarea() == null);
+        assertEquals(Informe.EstadoPrediccion.COMPLETADA, estado());
+        assertEquals("Cancer (label 1), score: 0.9", repositoryInforme.findById(informe.getId()).orElseThrow().getPrediccion());
+        assertEquals(2, predictor.llamadas.get());
+    }
+
+    @Test
+    void fallidaAlAgotarLosIntentos() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            predictor.respuestas.add(new PredictorException("Error de comunicacion con el servicio de prediccion"));
+        }
+
+        esperar(() -> {
+            prediccionWorker.procesar();
+            return tarea().getEstado() == PrediccionTarea.Estado.FALLIDA;
+        });
+        assertEquals(3, tarea().getIntentos());
+        assertEquals(3, predictor.llamadas.get());
+        esperar(() -> estado() == Informe.EstadoPrediccion.ERROR);
+
+        // Una tarea FALLIDA no se vuelve a intentar
+        prediccionWorker.procesar();
+        assertEquals(3, predictor.llamadas.get());
+    }
+
+    @Test
+    void circuitoAbiertoAplazaSinGastarIntentos() throws Exception {
+        long disponibleEn = System.currentTimeMillis() + 60000;
+        predictor.respuestas.add(new CircuitoAbiertoException("circuito abierto", disponibleEn));
+
+        prediccionWorker.procesar();
+        esperar(() -> tarea().getUltimoError() != null && tarea().getEstado() == PrediccionTarea.Estado.PENDIENTE);
+        assertEquals(0, tarea().getIntentos());
+        assertTrue(tarea().getProximoIntento() >= disponibleEn);
+        assertEquals(Informe.EstadoPrediccion.PENDIENTE, estado());
+
+        // Hasta que el circuito deja pasar una prueba no se vuelve a llamar al modelo
+        prediccionWorker.procesar();
+        assertEquals(1, predictor.llamadas.get());
+    }
+
+    private PrediccionTarea tarea() {
+        List<PrediccionTarea> tareas = repositoryPrediccionTarea.findByInformeId(informe.getId());
+        return tareas.isEmpty() ? null : tareas.get(0);
+    }
+
+    private Informe.EstadoPrediccion estado() {
+        return repositoryInforme.findById(informe.getId()).orElseThrow().getEstadoPrediccion();
+    }
+
+    // La prediccion se completa en otro hilo
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "no se cumplio la condicion en 5 s");
+            Thread.sleep(20);
+        }
+    }
+}
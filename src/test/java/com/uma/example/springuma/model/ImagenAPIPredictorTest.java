@@ -0,0 +1,162 @@
+package com.uma.example.springuma.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.uma.example.springuma.utils.CircuitBreaker;
+
+// Cliente bloqueante contra un servicio de prediccion local: reintentos de 503/429, plazo total de la
+// prediccion y circuit breaker. Las peticiones con cuerpo "rapido" siempre reciben la prediccion; las
+// demas, en orden, los estados encolados por cada test (200 cuando no quedan)
+public class ImagenAPIPredictorTest {
+
+    private static final String PREDICCION = "[{\"label\":\"LABEL_0\",\"score\":0.25},{\"label\":\"LABEL_1\",\"score\":0.75}]";
+
+    private HttpServer servidor;
+    private final Queue<Integer> estados = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger peticiones = new AtomicInteger();
+    private ImagenAPIPredictor predictor;
+    private PrediccionCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidor.createContext("/", this::responder);
+        servidor.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (predictor != null) {
+            predictor.close();
+        }
+        servidor.stop(0);
+    }
+
+    private void responder(HttpExchange intercambio) throws IOException {
+        String cuerpo = new String(intercambio.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Integer estado = cuerpo.equals("rapido") ? null : estados.poll();
+        if (!cuerpo.equals("rapido")) {
+            peticiones.incrementAndGet();
+        }
+        byte[] respuesta = (estado == null ? PREDICCION : "{\"error\":\"estado " + estado + "\"}").getBytes(StandardCharsets.UTF_8);
+        intercambio.sendResponseHeaders(estado == null ? 200 : estado, respuesta.length);
+        intercambio.getResponseBody().write(respuesta);
+        intercambio.close();
+    }
+
+    // Un solo hilo (y una conexion) hacia el servicio
+    private void crear(long timeoutTotal, int maxReintentos, long backoff, int maxFallos) {
+        breaker = new PrediccionCircuitBreaker(maxFallos, 200);
+        predictor = new ImagenAPIPredictor("http://localhost:" + servidor.getAddress().getPort() + "/", "Bearer prueba",
+                2, 1, 30000, 1000, 5000, timeoutTotal, maxReintentos, backoff, backoff,
+                breaker, new PrediccionBulkhead(1, 5000), new StandardEnvironment());
+    }
+
+    private Map<String, Double> consultar(String cuerpo) throws Exception {
+        return predictor.query(cuerpo.getBytes(StandardCharsets.UTF_8)).get(5, TimeUnit.SECONDS);
+    }
+
+    private Throwable error(String cuerpo) {
+        return assertThrows(ExecutionException.class, () -> consultar(cuerpo)).getCause();
+    }
+
+    @Test
+    void reintentaLos503Y429() throws Exception {
+        crear(5000, 3, 10, 5);
+        estados.add(503);
+        estados.add(429);
+
+        assertEquals(Map.of("LABEL_0", 0.25, "LABEL_1", 0.75), consultar("imagen"));
+        assertEquals(3, peticiones.get());
+        assertEquals(CircuitBreaker.Estado.CERRADO, breaker.getEstado());
+        assertEquals(0, breaker.getFallosSeguidos());
+    }
+
+    @Test
+    void reintentosAgotados() throws Exception {
+        crear(5000, 2, 10, 5);
+        for (int i = 0; i < 3; i++) {
+            estados.add(503);
+        }
+
+        assertInstanceOf(PredictorNoDisponibleException.class, error("imagen"));
+        assertEquals(3, peticiones.get());
+        assertEquals(1, breaker.getFallosSeguidos());
+    }
+
+    // Las esperas entre reintentos no ocupan el unico hilo del pool ni el unico turno del bulkhead
+    @Test
+    void lasEsperasNoBloqueanOtrasPredicciones() throws Exception {
+        crear(5000, 1, 1000, 5);
+        estados.add(503);
+
+        long inicio = System.nanoTime();
+        CompletableFuture<Map<String, Double>> reintentando = predictor.query("imagen".getBytes(StandardCharsets.UTF_8));
+        while (peticiones.get() == 0) {
+            Thread.sleep(5);
+        }
+        assertEquals(0.75, consultar("rapido").get("LABEL_1"));
+        assertTrue(!reintentando.isDone() && System.nanoTime() - inicio < TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertEquals(0.75, reintentando.get(5, TimeUnit.SECONDS).get("LABEL_1"));
+        assertEquals(2, peticiones.get());
+    }
+
+    // Una espera que acabaria despues del plazo total no se hace: falla ya, sin otro intento
+    @Test
+    void plazoTotal() throws Exception {
+        crear(300, 3, 2000, 5);
+        estados.add(503);
+
+        long inicio = System.nanoTime();
+        assertInstanceOf(TimeoutException.class, error("imagen"));
+        assertTrue(System.nanoTime() - inicio < TimeUnit.MILLISECONDS.toNanos(300));
+        assertEquals(1, peticiones.get());
+        assertEquals(1, breaker.getFallosSeguidos());
+    }
+
+    @Test
+    void circuitoAbiertoNoLlamaAlServicio() throws Exception {
+        crear(5000, 0, 10, 2);
+        estados.add(400);
+        estados.add(500);
+        estados.add(500);
+
+        // Los errores del cliente no cuentan como fallos del servicio
+        assertEquals(400, ((PredictorException) error("imagen")).getEstado());
+        assertEquals(0, breaker.getFallosSeguidos());
+        error("imagen");
+        error("imagen");
+        assertEquals(CircuitBreaker.Estado.ABIERTO, breaker.getEstado());
+
+        assertInstanceOf(CircuitoAbiertoException.class, error("imagen"));
+        assertEquals(3, peticiones.get());
+
+        // Pasada la espera, la llamada de prueba cierra el circuito
+        Thread.sleep(250);
+        assertEquals(0.75, consultar("imagen").get("LABEL_1"));
+        assertEquals(CircuitBreaker.Estado.CERRADO, breaker.getEstado());
+    }
+}
@@ -0,0 +1,62 @@
+package com.uma.example.springuma.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    void seAbreTrasLosFallosSeguidos() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60000);
+        breaker.fallo();
+        breaker.exito();
+        breaker.fallo();
+        assertEquals(CircuitBreaker.Estado.CERRADO, breaker.getEstado());
+        assertTrue(breaker.permitir());
+
+        long antes = System.currentTimeMillis();
+        breaker.fallo();
+        assertEquals(CircuitBreaker.Estado.ABIERTO, breaker.getEstado());
+        assertFalse(breaker.permitir());
+        assertEquals(1, breaker.getRechazadas());
+        assertEquals(1, breaker.getAperturas());
+        assertTrue(breaker.getProximaPrueba() >= antes + 60000);
+    }
+
+    @Test
+    void semiabiertoSeCierraConUnExito() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.fallo();
+        Thread.sleep(60);
+
+        // Pasada la espera solo se deja pasar una llamada de prueba
+        assertTrue(breaker.permitir());
+        assertEquals(CircuitBreaker.Estado.SEMIABIERTO, breaker.getEstado());
+        assertFalse(breaker.permitir());
+
+        breaker.exito();
+        assertEquals(CircuitBreaker.Estado.CERRADO, breaker.getEstado());
+        assertEquals(0, breaker.getFallosSeguidos());
+        assertTrue(breaker.permitir());
+        assertTrue(breaker.getProximaPrueba() <= System.currentTimeMillis());
+    }
+
+    @Test
+    void semiabiertoVuelveAAbrirseConUnFallo() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(3, 50);
+        for (int i = 0; i < 3; i++) {
+            breaker.fallo();
+        }
+        Thread.sleep(60);
+        assertTrue(breaker.permitir());
+
+        // Un solo fallo de la prueba basta para abrirlo otra vez
+        breaker.fallo();
+        assertEquals(CircuitBreaker.Estado.ABIERTO, breaker.getEstado());
+        assertFalse(breaker.permitir());
+        assertEquals(2, breaker.getAperturas());
+    }
+}
@@ -0,0 +1,33 @@
+package com.uma.example.springuma.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvParserTest {
+
+    @Test
+    void camposSeparadosPorComas() {
+        assertEquals(List.of("12345678A", "Ana", "Radiologia"), CsvParser.parse("12345678A,Ana,Radiologia"));
+    }
+
+    @Test
+    void camposVaciosYEspaciosAlrededor() {
+        assertEquals(List.of("a", "", "c", ""), CsvParser.parse(" a ,, c ,"));
+        assertEquals(List.of(""), CsvParser.parse(""));
+    }
+
+    @Test
+    void comillasConComasYComillasDobladas() {
+        assertEquals(List.of("Perez, Ana", "dice \"hola\"", "x"), CsvParser.parse("\"Perez, Ana\",\"dice \"\"hola\"\"\",x"));
+        assertEquals(List.of(""), CsvParser.parse("\"\""));
+    }
+
+    @Test
+    void comillasSinCerrar() {
+        assertThrows(IllegalArgumentException.class, () -> CsvParser.parse("a,\"b,c"));
+    }
+}
@@ -0,0 +1,41 @@
+-- Esquema que creaba Hibernate (ddl-auto=update) antes de las migraciones de Flyway, volcado con SCRIPT NODATA de H2
+CREATE SEQUENCE "PUBLIC"."IMAGEN_SEQ" START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE "PUBLIC"."INFORME_SEQ" START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE "PUBLIC"."MEDICO_SEQ" START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE "PUBLIC"."PACIENTE_SEQ" START WITH 1 INCREMENT BY 50;
+CREATE CACHED TABLE "PUBLIC"."IMAGEN"(
+    "ID" BIGINT NOT NULL,
+    "FECHA" TIMESTAMP(6),
+    "FILE_CONTENT" BINARY LARGE OBJECT,
+    "NOMBRE" CHARACTER VARYING(255),
+    "PACIENTE_ID" BIGINT
+);
+ALTER TABLE "PUBLIC"."IMAGEN" ADD CONSTRAINT "PUBLIC"."CONSTRAINT_8" PRIMARY KEY("ID");
+CREATE CACHED TABLE "PUBLIC"."INFORME"(
+    "ID" BIGINT NOT NULL,
+    "CONTENIDO" CHARACTER VARYING,
+    "PREDICCION" CHARACTER VARYING(255),
+    "IMAGEN_ID" BIGINT
+);
+ALTER TABLE "PUBLIC"."INFORME" ADD CONSTRAINT "PUBLIC"."CONSTRAINT_9" PRIMARY KEY("ID");
+CREATE CACHED TABLE "PUBLIC"."MEDICO"(
+    "ID" BIGINT NOT NULL,
+    "DNI" CHARACTER VARYING(255),
+    "ESPECIALIDAD" CHARACTER VARYING(255),
+    "NOMBRE" CHARACTER VARYING(255)
+);
+ALTER TABLE "PUBLIC"."MEDICO" ADD CONSTRAINT "PUBLIC"."CONSTRAINT_87" PRIMARY KEY("ID");
+CREATE CACHED TABLE "PUBLIC"."PACIENTE"(
+    "ID" BIGINT NOT NULL,
+    "CITA" CHARACTER VARYING(255),
+    "DNI" CHARACTER VARYING(255),
+    "EDAD" INTEGER,
+    "NOMBRE" CHARACTER VARYING(255),
+    "MEDICO_ID" BIGINT
+);
+ALTER TABLE "PUBLIC"."PACIENTE" ADD CONSTRAINT "PUBLIC"."CONSTRAINT_5" PRIMARY KEY("ID");
+ALTER TABLE "PUBLIC"."PACIENTE" ADD CONSTRAINT "PUBLIC"."UK_WR6KXHPAYD3JDLUDSYTBN8AG" UNIQUE("DNI");
+ALTER TABLE "PUBLIC"."MEDICO" ADD CONSTRAINT "PUBLIC"."UK_BXIKGOXGF4C1147WAT5JTH878" UNIQUE("DNI");
+ALTER TABLE "PUBLIC"."PACIENTE" ADD CONSTRAINT "PUBLIC"."FKDB6GGRAU4KXV0XCU8N17BMN9U" FOREIGN KEY("MEDICO_ID") REFERENCES "PUBLIC"."MEDICO"("ID") ON DELETE CASCADE NOCHECK;
+ALTER TABLE "PUBLIC"."IMAGEN" ADD CONSTRAINT "PUBLIC"."FKIMRYCMHLRXO3MCT9129VHSLET" FOREIGN KEY("PACIENTE_ID") REFERENCES "PUBLIC"."PACIENTE"("ID") ON DELETE CASCADE NOCHECK;
+ALTER TABLE "PUBLIC"."INFORME" ADD CONSTRAINT "PUBLIC"."FK6EIIJURDYXKY4959WF40P9KIV" FOREIGN KEY("IMAGEN_ID") REFERENCES "PUBLIC"."IMAGEN"("ID") ON DELETE CASCADE NOCHECK;